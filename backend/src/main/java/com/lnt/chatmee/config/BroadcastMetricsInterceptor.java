@@ -0,0 +1,57 @@
+package com.lnt.chatmee.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import com.lnt.chatmee.service.RoomBroadcaster;
+import com.lnt.chatmee.service.RoomPresenceService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts the payload bytes that leave the outbound channel for room topics.
+ * Compared with chatmee.broadcast.bytes.encoded this gives the fan-out factor of room broadcasts.
+ * Presence frames are counted separately; divided by chatmee.presence.changes they give the frames
+ * sent per user going online or offline.
+ */
+@Component
+public class BroadcastMetricsInterceptor implements ChannelInterceptor {
+
+    private final Counter bytesSent;
+    private final Counter framesSent;
+    private final Counter presenceFramesSent;
+
+    public BroadcastMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.bytesSent = Counter.builder("chatmee.broadcast.bytes.sent")
+            .description("Room broadcast payload bytes delivered to subscriber sessions")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        this.framesSent = Counter.builder("chatmee.broadcast.frames.sent")
+            .description("Room broadcast frames delivered to subscriber sessions")
+            .register(meterRegistry);
+        this.presenceFramesSent = Counter.builder("chatmee.presence.frames.sent")
+            .description("Presence frames delivered to subscriber sessions")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination != null && destination.startsWith(RoomBroadcaster.ROOM_TOPIC_PREFIX)
+                && message.getPayload() instanceof byte[] payload) {
+            bytesSent.increment(payload.length);
+            framesSent.increment();
+        } else if (destination != null && destination.startsWith(RoomPresenceService.GLOBAL_PRESENCE_TOPIC)) {
+            presenceFramesSent.increment();
+        }
+        return message;
+    }
+}
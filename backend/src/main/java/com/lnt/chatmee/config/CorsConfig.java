@@ -30,7 +30,11 @@ public class CorsConfig {
         configuration.setExposedHeaders(Arrays.asList(
                 "Authorization",
                 "Cache-Control",
-                "Content-Type"));
+                "Content-Type",
+                "X-RateLimit-Limit",
+                "X-RateLimit-Remaining",
+                "X-RateLimit-Reset",
+                "Retry-After"));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
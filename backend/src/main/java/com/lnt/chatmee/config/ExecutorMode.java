@@ -0,0 +1,54 @@
+package com.lnt.chatmee.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * How the STOMP inbound and outbound channels run their tasks, selected with {@code app.executor.mode}.
+ *
+ * POOL keeps the bounded platform thread pools. VIRTUAL starts one virtual thread per task, so a handler
+ * blocked on MongoDB or Redis no longer holds one of a handful of pool threads. That covers the blocking
+ * calls of the send path (sequence allocation, journal append), which run on the inbound channel. The
+ * write-behind flusher is a single dedicated thread and is not affected. Virtual threads need Java 21;
+ * on older runtimes VIRTUAL falls back to POOL with a warning.
+ *
+ * VIRTUAL is unverified. The project builds and runs on Java 17, where it is never active, and it has not
+ * been load-tested against POOL (the 10k-session comparison is still missing). Keep POOL in production.
+ */
+public enum ExecutorMode {
+    POOL,
+    VIRTUAL;
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorMode.class);
+    private static final AtomicBoolean warningLogged = new AtomicBoolean();
+
+    public static ExecutorMode resolve(String configured) {
+        ExecutorMode mode = ExecutorMode.valueOf(configured.trim().toUpperCase());
+        if (mode == VIRTUAL && Runtime.version().feature() < 21) {
+            if (warningLogged.compareAndSet(false, true)) {
+                logger.warn("app.executor.mode=virtual needs Java 21 or newer (running {}), using thread pools instead",
+                    Runtime.version());
+            }
+            return POOL;
+        }
+        if (mode == VIRTUAL && warningLogged.compareAndSet(false, true)) {
+            logger.warn("app.executor.mode=virtual has not been load-tested; use pool unless you are measuring it");
+        }
+        return mode;
+    }
+
+    public boolean isVirtual() {
+        return this == VIRTUAL;
+    }
+
+    static Executor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setTaskTerminationTimeout(60_000);
+        return executor;
+    }
+}
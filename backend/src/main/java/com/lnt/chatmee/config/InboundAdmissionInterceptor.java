@@ -0,0 +1,238 @@
+package com.lnt.chatmee.config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.dto.StompError;
+import com.lnt.chatmee.dto.request.ChatMessageRequest;
+import com.lnt.chatmee.util.SessionDestinations;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Admission control for the client inbound channel.
+ *
+ * Tracks how many executor tasks admitted SEND frames still hold in the inbound queue and how long they
+ * wait. The channel queues one task per subscribed handler (annotation methods, user destinations and the
+ * broker), so a frame counts once for each of them until that task starts and the watermarks are in tasks,
+ * the same unit as the executor's queue capacity. Once either goes past the low watermark, typing and
+ * presence frames are dropped; chat frames are only refused past the high watermark, so the queue never
+ * fills with frames nobody will miss. A refused chat message is answered with a {@link StompError} on the
+ * sender's error destination carrying a retry-after hint.
+ * Low-priority frames are dropped silently because retrying a stale typing or presence state is pointless.
+ */
+@Component
+public class InboundAdmissionInterceptor implements ExecutorChannelInterceptor {
+
+    static final String ADMISSION_HEADER = "chatmee.admission";
+
+    private static final Logger logger = LoggerFactory.getLogger(InboundAdmissionInterceptor.class);
+
+    private static final long MIN_RETRY_AFTER_MS = 200;
+    private static final long MAX_RETRY_AFTER_MS = 10_000;
+    // weight of the newest sample in the moving average of queue wait time
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final int lowPriorityMaxQueued;
+    private final int highPriorityMaxQueued;
+    private final long lowPriorityMaxWaitNanos;
+    private final long highPriorityMaxWaitNanos;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile double averageWaitNanos;
+    private final ThreadLocal<Long> handleStartedAt = new ThreadLocal<>();
+
+    private final Counter lowPriorityShed;
+    private final Counter highPriorityShed;
+    private final Timer queueWait;
+    private final Timer handlerLatency;
+
+    public InboundAdmissionInterceptor(@Lazy SimpMessagingTemplate messagingTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.websocket.admission.low-priority.max-queued:150}") int lowPriorityMaxQueued,
+            @Value("${app.websocket.admission.high-priority.max-queued:270}") int highPriorityMaxQueued,
+            @Value("${app.websocket.admission.low-priority.max-wait-ms:100}") long lowPriorityMaxWaitMs,
+            @Value("${app.websocket.admission.high-priority.max-wait-ms:1000}") long highPriorityMaxWaitMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.lowPriorityMaxQueued = lowPriorityMaxQueued;
+        this.highPriorityMaxQueued = highPriorityMaxQueued;
+        this.lowPriorityMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(lowPriorityMaxWaitMs);
+        this.highPriorityMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(highPriorityMaxWaitMs);
+
+        this.lowPriorityShed = shedCounter(meterRegistry, Priority.LOW);
+        this.highPriorityShed = shedCounter(meterRegistry, Priority.HIGH);
+        this.queueWait = Timer.builder("chatmee.inbound.queue.wait")
+            .description("Time a SEND frame waits for an inbound executor thread")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+        this.handlerLatency = Timer.builder("chatmee.inbound.handler.latency")
+            .description("Time spent in @MessageMapping handlers")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+        Gauge.builder("chatmee.inbound.queue.depth", queued, AtomicInteger::get)
+            .description("Handler tasks of admitted SEND frames not yet picked up by an executor thread")
+            .register(meterRegistry);
+    }
+
+    private static Counter shedCounter(MeterRegistry meterRegistry, Priority priority) {
+        return Counter.builder("chatmee.inbound.shed")
+            .tag("priority", priority.name().toLowerCase())
+            .description("Inbound frames refused by admission control")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        // CONNECT, SUBSCRIBE, DISCONNECT and friends are always admitted
+        if (accessor == null || accessor.getCommand() != StompCommand.SEND) {
+            return message;
+        }
+
+        Priority priority = Priority.of(accessor.getDestination());
+        int depth = queued.get();
+        // the wait average only moves when frames are dequeued, so it is ignored once the queue has drained
+        double wait = depth > 0 ? averageWaitNanos : 0;
+        if (priority == Priority.LOW && (depth >= lowPriorityMaxQueued || wait >= lowPriorityMaxWaitNanos)) {
+            lowPriorityShed.increment();
+            return null;
+        }
+        if (priority == Priority.HIGH && (depth >= highPriorityMaxQueued || wait >= highPriorityMaxWaitNanos)) {
+            highPriorityShed.increment();
+            rejectChat(message, accessor);
+            return null;
+        }
+
+        int tasks = handlerCount(channel);
+        queued.addAndGet(tasks);
+        Ticket ticket = new Ticket(System.nanoTime(), tasks);
+        if (accessor.isMutable()) {
+            accessor.setHeader(ADMISSION_HEADER, ticket);
+            return message;
+        }
+        return MessageBuilder.fromMessage(message).setHeader(ADMISSION_HEADER, ticket).build();
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        // the executor refused (some of) the frame's tasks; release what is left rather than leak it
+        if (!sent || ex != null) {
+            Ticket ticket = ticketOf(message);
+            if (ticket != null) {
+                queued.addAndGet(-ticket.pending.getAndSet(0));
+            }
+        }
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        Ticket ticket = ticketOf(message);
+        if (ticket == null) {
+            return message;
+        }
+
+        long now = System.nanoTime();
+        // every subscribed handler gets its own task and each one leaves the queue as it starts
+        if (ticket.pending.getAndUpdate(pending -> Math.max(0, pending - 1)) > 0) {
+            queued.decrementAndGet();
+        }
+        if (ticket.started.compareAndSet(false, true)) {
+            long waited = now - ticket.admittedAt;
+            queueWait.record(waited, TimeUnit.NANOSECONDS);
+            averageWaitNanos = averageWaitNanos + EWMA_ALPHA * (waited - averageWaitNanos);
+        }
+        if (handler instanceof SimpAnnotationMethodMessageHandler) {
+            handleStartedAt.set(now);
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        Long startedAt = handleStartedAt.get();
+        if (startedAt != null && handler instanceof SimpAnnotationMethodMessageHandler) {
+            handleStartedAt.remove();
+            handlerLatency.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void rejectChat(Message<?> message, StompHeaderAccessor accessor) {
+        long retryAfterMs = Math.min(MAX_RETRY_AFTER_MS,
+            Math.max(MIN_RETRY_AFTER_MS, TimeUnit.NANOSECONDS.toMillis((long) (averageWaitNanos * 2))));
+        try {
+            ChatMessageRequest request = objectMapper.readValue((byte[]) message.getPayload(), ChatMessageRequest.class);
+            StompError error = StompError.builder()
+                .tempId(request.getTempId())
+                .message("Server is busy, please retry")
+                .retryAfterMs(retryAfterMs)
+                .build();
+            messagingTemplate.convertAndSendToUser(accessor.getSessionId(), SessionDestinations.ERRORS, error,
+                SessionDestinations.headers(accessor.getSessionId()));
+        } catch (Exception e) {
+            logger.warn("Refused frame to {} from session {} but could not notify the sender",
+                accessor.getDestination(), accessor.getSessionId(), e);
+        }
+    }
+
+    private static int handlerCount(MessageChannel channel) {
+        if (channel instanceof AbstractSubscribableChannel) {
+            return Math.max(1, ((AbstractSubscribableChannel) channel).getSubscribers().size());
+        }
+        return 1;
+    }
+
+    private static Ticket ticketOf(Message<?> message) {
+        Object ticket = message.getHeaders().get(ADMISSION_HEADER);
+        return ticket instanceof Ticket ? (Ticket) ticket : null;
+    }
+
+    private enum Priority {
+        LOW,
+        HIGH;
+
+        private static Priority of(String destination) {
+            if (destination != null && (destination.startsWith("/app/typing") || destination.startsWith("/app/presence"))) {
+                return LOW;
+            }
+            return HIGH;
+        }
+    }
+
+    private static final class Ticket {
+        private final long admittedAt;
+        private final AtomicBoolean started = new AtomicBoolean();
+        // handler tasks of this frame still waiting in the queue
+        private final AtomicInteger pending;
+
+        private Ticket(long admittedAt, int tasks) {
+            this.admittedAt = admittedAt;
+            this.pending = new AtomicInteger(tasks);
+        }
+    }
+}
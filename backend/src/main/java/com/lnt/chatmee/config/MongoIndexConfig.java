@@ -0,0 +1,52 @@
+package com.lnt.chatmee.config;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+
+import com.lnt.chatmee.model.ChatRoom;
+import com.lnt.chatmee.model.Message;
+import com.lnt.chatmee.model.Participant;
+import com.lnt.chatmee.model.User;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Creates the indexes declared on the documents at startup.
+ *
+ * Spring Data does not create them by itself because auto-index-creation is off by default, so every
+ * query in the repositories would otherwise scan its whole collection. Creating an index that already
+ * exists with the same definition is a no-op.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class MongoIndexConfig {
+
+    static final List<Class<?>> INDEXED_DOCUMENTS = List.of(Message.class, ChatRoom.class, Participant.class, User.class);
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexConfig.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void createIndexes() {
+        IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+
+        for (Class<?> document : INDEXED_DOCUMENTS) {
+            IndexOperations indexOps = mongoTemplate.indexOps(document);
+            for (IndexDefinition index : resolver.resolveIndexFor(document)) {
+                String name = indexOps.createIndex(index);
+                logger.debug("Ensured index {} on {}", name, mongoTemplate.getCollectionName(document));
+            }
+        }
+        logger.info("MongoDB indexes ensured for {} collections", INDEXED_DOCUMENTS.size());
+    }
+}
@@ -7,6 +7,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
 import org.springframework.stereotype.Component;
 
+import com.lnt.chatmee.security.AuthenticatedUser;
+
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -34,6 +36,10 @@ public class OAuth2AuthenticationSuccessHandler extends SimpleUrlAuthenticationS
         log.info("=== OAuth2 Success Handler ===");
         log.info("Session ID: {}", sessionId);
         log.info("Authenticated User: {}", authentication.getName());
+        if (authentication.getPrincipal() instanceof AuthenticatedUser) {
+            // resolved by CustomOAuth2UserService and kept on the principal for the rest of the session
+            log.info("User ID: {}", ((AuthenticatedUser) authentication.getPrincipal()).getUserId());
+        }
         log.info("Redirecting to: {}/dashboard", clientUrl);
         
         // Simple redirect to dashboard
@@ -0,0 +1,226 @@
+package com.lnt.chatmee.config;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Executor for the client outbound channel that gives every session two lanes.
+ *
+ * Chat messages, errors, presence deltas and everything else go to the priority lane; typing snapshots go
+ * to the best-effort lane, which is only served when the priority lane of that session is empty. A typing
+ * snapshot carries the whole state of its room, so the best-effort lane keeps only the latest frame per
+ * destination: a newer snapshot for a room replaces the queued one, and snapshots of other rooms are left
+ * alone. Only when more rooms than the lane capacity are waiting is the oldest of them dropped, and frames
+ * that waited longer than the staleness limit are dropped instead of sent. Presence deltas stay on the
+ * priority lane because each one only carries the changes of its own flush window.
+ * Each session is drained by at most one task at a time, so frames within a lane keep their order. That
+ * replaces the channel's publish-order option, which must stay off: it waits for every frame to be handled
+ * before releasing the next one, and a dropped frame is never handled.
+ * When the worker pool refuses a drain task, the session waits in a backlog that busy workers serve before
+ * they finish, so a drain never runs on the thread that published the frame.
+ */
+public class OutboundLaneExecutor implements Executor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundLaneExecutor.class);
+
+    private static final int DRAIN_BATCH = 32;
+
+    private final Executor delegate;
+    private final int bestEffortCapacity;
+    private final long staleNanos;
+    private final Map<String, SessionLanes> sessions = new ConcurrentHashMap<>();
+    // sessions with pending frames whose drain task the worker pool refused
+    private final Queue<SessionLanes> backlog = new ConcurrentLinkedQueue<>();
+
+    private final Timer priorityWait;
+    private final Timer bestEffortWait;
+    private final Counter droppedOverflow;
+    private final Counter droppedStale;
+    private final Counter droppedSuperseded;
+
+    public OutboundLaneExecutor(Executor delegate, MeterRegistry meterRegistry, int bestEffortCapacity, long staleMillis) {
+        this.delegate = delegate;
+        this.bestEffortCapacity = bestEffortCapacity;
+        this.staleNanos = TimeUnit.MILLISECONDS.toNanos(staleMillis);
+        this.priorityWait = laneWait(meterRegistry, "priority");
+        this.bestEffortWait = laneWait(meterRegistry, "best_effort");
+        this.droppedOverflow = dropped(meterRegistry, "overflow");
+        this.droppedStale = dropped(meterRegistry, "stale");
+        this.droppedSuperseded = dropped(meterRegistry, "superseded");
+    }
+
+    private static Timer laneWait(MeterRegistry meterRegistry, String lane) {
+        return Timer.builder("chatmee.outbound.lane.wait")
+            .tag("lane", lane)
+            .description("Time an outbound frame waits in its session lane")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+    }
+
+    private static Counter dropped(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("chatmee.outbound.dropped")
+            .tag("reason", reason)
+            .description("Best-effort outbound frames that were never sent")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        String sessionId = task instanceof MessageHandlingRunnable
+            ? SimpMessageHeaderAccessor.getSessionId(((MessageHandlingRunnable) task).getMessage().getHeaders())
+            : null;
+        if (sessionId == null) {
+            delegate.execute(task);
+            return;
+        }
+
+        String bestEffortKey = bestEffortKey(((MessageHandlingRunnable) task).getMessage());
+        SessionLanes lanes;
+        boolean schedule;
+        while (true) {
+            lanes = sessions.computeIfAbsent(sessionId, SessionLanes::new);
+            synchronized (lanes) {
+                if (!lanes.retired) {
+                    schedule = enqueue(lanes, task, bestEffortKey);
+                    break;
+                }
+            }
+            // the drain task just released this session; retry against a fresh entry
+        }
+        if (schedule) {
+            schedule(lanes);
+        }
+    }
+
+    private void schedule(SessionLanes lanes) {
+        try {
+            delegate.execute(() -> drain(lanes));
+        } catch (RejectedExecutionException e) {
+            // every worker is busy; the first one to finish its session picks this one up
+            backlog.add(lanes);
+        }
+    }
+
+    private boolean enqueue(SessionLanes lanes, Runnable task, String bestEffortKey) {
+        if (bestEffortKey != null) {
+            // the newer snapshot goes to the back, behind snapshots of rooms that have waited longer
+            if (lanes.bestEffort.remove(bestEffortKey) != null) {
+                droppedSuperseded.increment();
+            } else if (lanes.bestEffort.size() >= bestEffortCapacity) {
+                Iterator<Queued> oldest = lanes.bestEffort.values().iterator();
+                oldest.next();
+                oldest.remove();
+                droppedOverflow.increment();
+            }
+            lanes.bestEffort.put(bestEffortKey, new Queued(task, System.nanoTime()));
+        } else {
+            lanes.priority.addLast(new Queued(task, System.nanoTime()));
+        }
+        boolean schedule = !lanes.scheduled;
+        lanes.scheduled = true;
+        return schedule;
+    }
+
+    private void drain(SessionLanes first) {
+        SessionLanes lanes = first;
+        while (lanes != null) {
+            if (drainBatch(lanes)) {
+                // give other sessions a turn before continuing with this one
+                schedule(lanes);
+            }
+            lanes = backlog.poll();
+        }
+    }
+
+    // returns whether the session still has frames after a full batch
+    private boolean drainBatch(SessionLanes lanes) {
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+            Queued next;
+            boolean fromPriority;
+            synchronized (lanes) {
+                fromPriority = !lanes.priority.isEmpty();
+                next = fromPriority ? lanes.priority.pollFirst() : pollOldest(lanes.bestEffort);
+                if (next == null) {
+                    lanes.retired = true;
+                    sessions.remove(lanes.sessionId, lanes);
+                    return false;
+                }
+            }
+
+            long waited = System.nanoTime() - next.enqueuedAt;
+            if (fromPriority) {
+                priorityWait.record(waited, TimeUnit.NANOSECONDS);
+            } else if (waited > staleNanos) {
+                droppedStale.increment();
+                continue;
+            } else {
+                bestEffortWait.record(waited, TimeUnit.NANOSECONDS);
+            }
+            try {
+                next.task.run();
+            } catch (RuntimeException e) {
+                // the channel has already reported the failure; keep serving the session
+                logger.debug("Outbound frame for session {} failed", lanes.sessionId, e);
+            }
+        }
+        return true;
+    }
+
+    private static Queued pollOldest(Map<String, Queued> lane) {
+        Iterator<Queued> oldest = lane.values().iterator();
+        if (!oldest.hasNext()) {
+            return null;
+        }
+        Queued next = oldest.next();
+        oldest.remove();
+        return next;
+    }
+
+    // frames to the same destination supersede each other, so the destination is the coalescing key
+    private static String bestEffortKey(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        return destination != null && destination.startsWith("/topic/typing/") ? destination : null;
+    }
+
+    private static final class SessionLanes {
+        private final String sessionId;
+        private final Deque<Queued> priority = new ArrayDeque<>();
+        // destination -> latest frame, in the order the destinations were last queued
+        private final Map<String, Queued> bestEffort = new LinkedHashMap<>();
+        private boolean scheduled;
+        private boolean retired;
+
+        private SessionLanes(String sessionId) {
+            this.sessionId = sessionId;
+        }
+    }
+
+    private static final class Queued {
+        private final Runnable task;
+        private final long enqueuedAt;
+
+        private Queued(Runnable task, long enqueuedAt) {
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -6,19 +6,44 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import com.lnt.chatmee.service.RedisMembershipSubscriber;
+import com.lnt.chatmee.service.RedisPresencePublisher;
 import com.lnt.chatmee.service.RedisPresenseSubcriber;
+import com.lnt.chatmee.service.RoomMembershipCache;
+import com.lnt.chatmee.service.TypingIndicatorService;
 
 @Configuration
 public class RedisConfig {
 
-    private static final String PRESENSE_CHANNEL = "presense-channel";
+    @Bean
+    public RedisMessageListenerContainer container(RedisConnectionFactory connectionFactory, MessageListenerAdapter listenerAdapter,
+            RedisMembershipSubscriber membershipSubscriber, TypingIndicatorService typingIndicatorService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(listenerAdapter, new ChannelTopic(RedisPresencePublisher.PRESENCE_CHANNEL));
+        container.addMessageListener(listenerAdapter, new ChannelTopic(RedisPresencePublisher.SIGN_OFF_CHANNEL));
+        container.addMessageListener(membershipSubscriber, new ChannelTopic(RoomMembershipCache.MEMBERSHIP_CHANNEL));
+        container.addMessageListener(typingIndicatorService, new ChannelTopic(TypingIndicatorService.TYPING_CHANNEL));
+        return container;
+    }
 
+    /**
+     * Separate container for the room relay. Its listeners are added and removed as local sessions come and go,
+     * and a single dispatch thread keeps relayed messages of a room in publish order.
+     */
     @Bean
-    public RedisMessageListenerContainer container(RedisConnectionFactory connectionFactory, MessageListenerAdapter listenerAdapter) {
+    public RedisMessageListenerContainer roomRelayContainer(RedisConnectionFactory connectionFactory) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("room-relay-");
+        executor.initialize();
+
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
-        container.addMessageListener(listenerAdapter, new ChannelTopic(PRESENSE_CHANNEL));
+        container.setTaskExecutor(executor);
         return container;
     }
 
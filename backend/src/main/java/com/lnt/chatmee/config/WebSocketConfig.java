@@ -1,54 +1,108 @@
 package com.lnt.chatmee.config;
 
+import java.util.concurrent.Executor;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
+import com.lnt.chatmee.security.SessionIdentityInterceptor;
+import com.lnt.chatmee.security.StompRateLimitInterceptor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.RequiredArgsConstructor;
+
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompRateLimitInterceptor stompRateLimitInterceptor;
+    private final InboundAdmissionInterceptor inboundAdmissionInterceptor;
+    private final SessionIdentityInterceptor sessionIdentityInterceptor;
+    private final BroadcastMetricsInterceptor broadcastMetricsInterceptor;
+    private final MeterRegistry meterRegistry;
+
     @Value("${app.client.url}")
     private String clientUrl;
 
+    @Value("${app.executor.mode:pool}")
+    private String executorMode;
+
+    @Value("${app.websocket.inbound.queue-capacity:400}")
+    private int inboundQueueCapacity;
+
+    @Value("${app.websocket.outbound.best-effort.capacity:16}")
+    private int bestEffortLaneCapacity;
+
+    @Value("${app.websocket.outbound.best-effort.stale-ms:2000}")
+    private long bestEffortStaleMs;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")  // Allow cross-origin for direct WebSocket
                 .setAllowedOrigins(clientUrl)
                 .withSockJS();
+        // with a thread per frame, frames of one session must not overtake each other
+        registry.setPreserveReceiveOrder(mode().isVirtual());
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
-        registry.enableSimpleBroker("/topic")
+        // no publish order: the outbound lanes already keep each session's frames in order, and the ordering
+        // decorator would wait forever for the frames the best-effort lane drops
+        // /queue carries per-session destinations such as /user/queue/errors
+        registry.enableSimpleBroker("/topic", "/queue")
                 .setHeartbeatValue(new long[]{10000, 10000}) // 10s heartbeat
                 .setTaskScheduler(heartbeatScheduler());
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        // floods are refused before they count towards the admission queue
+        registration.interceptors(stompRateLimitInterceptor, inboundAdmissionInterceptor, sessionIdentityInterceptor);
+        if (mode().isVirtual()) {
+            registration.executor(ExecutorMode.virtualThreadExecutor("ws-inbound-"));
+            return;
+        }
         registration.taskExecutor()
                 .corePoolSize(4)
                 .maxPoolSize(16)
-                .queueCapacity(100);
+                .queueCapacity(inboundQueueCapacity);
     }
 
     @Override
     public void configureClientOutboundChannel(ChannelRegistration registration) {
-        registration.taskExecutor()
-                .corePoolSize(4)
-                .maxPoolSize(16)
-                .queueCapacity(100);
+        registration.interceptors(broadcastMetricsInterceptor);
+        // per-session lanes keep chat, presence and error frames ahead of typing snapshots
+        Executor workers = mode().isVirtual()
+                ? ExecutorMode.virtualThreadExecutor("ws-outbound-")
+                : outboundLanePool();
+        registration.executor(new OutboundLaneExecutor(workers, meterRegistry, bestEffortLaneCapacity, bestEffortStaleMs));
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor outboundLanePool() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(16);
+        // holds at most one drain task per session with pending frames; the lane executor keeps the sessions
+        // it refuses in a backlog, so the default abort policy never loses a frame
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("ws-outbound-");
+        return executor;
     }
 
     @Override
@@ -58,6 +112,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                     .setSendTimeLimit(20000); // 20 seconds
     }
 
+    private ExecutorMode mode() {
+        return ExecutorMode.resolve(executorMode);
+    }
+
     @Bean
     public TaskScheduler heartbeatScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
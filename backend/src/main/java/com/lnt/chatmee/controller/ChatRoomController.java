@@ -17,24 +17,23 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.lnt.chatmee.dto.request.CreateChatRoomRequest;
 import com.lnt.chatmee.dto.request.JoinChatRoomRequest;
 import com.lnt.chatmee.dto.request.UpdateChatRoomRequest;
 import com.lnt.chatmee.dto.response.ApiResponse;
+import com.lnt.chatmee.dto.response.ChatRoomPageResponse;
 import com.lnt.chatmee.dto.response.ChatRoomResponse;
 import com.lnt.chatmee.exception.ForbiddenActionException;
 import com.lnt.chatmee.exception.UnauthorizedRoomActionException;
-import com.lnt.chatmee.exception.UserNotFoundException;
 import com.lnt.chatmee.model.ChatRoom;
 import com.lnt.chatmee.model.Participant;
-import com.lnt.chatmee.model.User;
 import com.lnt.chatmee.repository.ParticipantRepository;
-import com.lnt.chatmee.repository.UserRepository;
+import com.lnt.chatmee.security.PrincipalUserResolver;
 import com.lnt.chatmee.service.ChatRoomService;
 import com.lnt.chatmee.service.ParticipantService;
-import com.lnt.chatmee.util.OAuthUtil;
 
 import lombok.RequiredArgsConstructor;
 
@@ -47,16 +46,14 @@ public class ChatRoomController {
 
     private final ChatRoomService chatRoomService;
     private final ParticipantService participantService;
-    private final UserRepository userRepository;
     private final ParticipantRepository participantRepository;
-    private final OAuthUtil oAuthUtil;
+    private final PrincipalUserResolver principalUserResolver;
     
     @PostMapping("/create")
     public ResponseEntity<ApiResponse<ChatRoomResponse>> createChatRoom(@Validated @RequestBody CreateChatRoomRequest request, @AuthenticationPrincipal OAuth2User principle) {
         try {
-            String provider = oAuthUtil.determineProvider(principle);
-            String providerId = oAuthUtil.getProviderId(principle, provider);
-            ChatRoomResponse responseBody = chatRoomService.createRoom(request, provider, providerId);
+            String userId = principalUserResolver.userId(principle);
+            ChatRoomResponse responseBody = chatRoomService.createRoom(request, userId);
             return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success("Chat room created successfully", responseBody));
         } catch (Exception e) {
             logger.error("Error creating chat room: ", e);
@@ -67,9 +64,8 @@ public class ChatRoomController {
     @GetMapping
     public ResponseEntity<ApiResponse<List<ChatRoomResponse>>> getChatRoomList(@AuthenticationPrincipal OAuth2User principle) {
         try {
-            String provider = oAuthUtil.determineProvider(principle);
-            String providerId = oAuthUtil.getProviderId(principle, provider);
-            List<ChatRoom> chatRoomList = chatRoomService.getList(provider, providerId);
+            String userId = principalUserResolver.userId(principle);
+            List<ChatRoom> chatRoomList = chatRoomService.getList(userId);
             List<ChatRoomResponse> responseBody = chatRoomList.stream()
                 .map(this::convertToChatRoomResponse)
                 .collect(Collectors.toList());
@@ -80,12 +76,26 @@ public class ChatRoomController {
         }
     }
 
+    @GetMapping("/summaries")
+    public ResponseEntity<ApiResponse<ChatRoomPageResponse>> getChatRoomPage(
+            @AuthenticationPrincipal OAuth2User principle,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            String userId = principalUserResolver.userId(principle);
+            ChatRoomPageResponse page = chatRoomService.getRoomPage(userId, cursor, limit);
+            return ResponseEntity.ok(ApiResponse.success(page));
+        } catch (Exception e) {
+            logger.error("Error getting chat room page: ", e);
+            throw e;
+        }
+    }
+
     @GetMapping("/{roomId}")
     public ResponseEntity<ApiResponse<ChatRoomResponse>> getChatRoomById(@AuthenticationPrincipal OAuth2User principle, @PathVariable String roomId) {
         try {
-            String provider = oAuthUtil.determineProvider(principle);
-            String providerId = oAuthUtil.getProviderId(principle, provider);
-            ChatRoom room = chatRoomService.getChatRoomById(provider, providerId, roomId);
+            String userId = principalUserResolver.userId(principle);
+            ChatRoom room = chatRoomService.getChatRoomById(userId, roomId);
             ChatRoomResponse responseBody = convertToChatRoomResponse(room);
             return ResponseEntity.ok(ApiResponse.success(responseBody));
         } catch (Exception e) {
@@ -97,9 +107,8 @@ public class ChatRoomController {
     @PutMapping("/{roomId}")
     public ResponseEntity<ApiResponse<ChatRoomResponse>> updateChatRoom(@AuthenticationPrincipal OAuth2User principle, @PathVariable String roomId, @Validated @RequestBody UpdateChatRoomRequest request) {
         try {
-            String provider = oAuthUtil.determineProvider(principle);
-            String providerId = oAuthUtil.getProviderId(principle, provider);
-            ChatRoom room = chatRoomService.updateChatRoomById(provider, providerId, roomId, request);
+            String userId = principalUserResolver.userId(principle);
+            ChatRoom room = chatRoomService.updateChatRoomById(userId, roomId, request);
             ChatRoomResponse responseBody = convertToChatRoomResponse(room);
             return ResponseEntity.ok(ApiResponse.success("Chat room updated successfully", responseBody));
         } catch (Exception e) {
@@ -111,9 +120,8 @@ public class ChatRoomController {
     @DeleteMapping("/{roomId}")
     public ResponseEntity<ApiResponse<String>> deleteChatRoom(@AuthenticationPrincipal OAuth2User principle, @PathVariable String roomId) {
         try {
-            String provider = oAuthUtil.determineProvider(principle);
-            String providerId = oAuthUtil.getProviderId(principle, provider);
-            chatRoomService.deleteChatRoomById(provider, providerId, roomId);
+            String userId = principalUserResolver.userId(principle);
+            chatRoomService.deleteChatRoomById(userId, roomId);
             return ResponseEntity.ok(ApiResponse.success("Chat room deleted successfully"));
         } catch (Exception e) {
             logger.error("Error during deleting chat room: ", e);
@@ -126,11 +134,10 @@ public class ChatRoomController {
             @AuthenticationPrincipal OAuth2User principal, 
             @PathVariable String roomId) {
         try {
-            String provider = oAuthUtil.determineProvider(principal);
-            String providerId = oAuthUtil.getProviderId(principal, provider);
+            String userId = principalUserResolver.userId(principal);
             
             // Join the room as the authenticated user
-            participantService.joinRoom(roomId, provider, providerId);
+            participantService.joinRoom(roomId, userId);
             
             return ResponseEntity.ok(ApiResponse.success("Successfully joined the chat room"));
         } catch (Exception e) {
@@ -145,13 +152,9 @@ public class ChatRoomController {
             @PathVariable String roomId,
             @Validated @RequestBody JoinChatRoomRequest request) {
         try {
-            String provider = oAuthUtil.determineProvider(principal);
-            String providerId = oAuthUtil.getProviderId(principal, provider);
+            String userId = principalUserResolver.userId(principal);
 
-            User authenticatedUser = userRepository.findByProviderAndProviderId(provider, providerId)
-                .orElseThrow(() -> new UserNotFoundException("Authenticated user not found"));
-            
-            Participant authenticatedParticipant = participantRepository.findByChatRoomIdAndUserId(roomId, authenticatedUser.getId())
+            Participant authenticatedParticipant = participantRepository.findByChatRoomIdAndUserId(roomId, userId)
                 .orElseThrow(() -> new UnauthorizedRoomActionException("User is not a participant of the chat room"));
             if (authenticatedParticipant.getRole() != Participant.Role.ADMIN && authenticatedParticipant.getRole() != Participant.Role.OWNER ) {
                 throw new ForbiddenActionException("Only ADMIN or OWNER can add participants to the chat room");
@@ -182,10 +185,9 @@ public class ChatRoomController {
         @PathVariable String roomId
     ) {
         try {
-            String provider = oAuthUtil.determineProvider(principal);
-            String providerId = oAuthUtil.getProviderId(principal, provider);
+            String userId = principalUserResolver.userId(principal);
 
-            chatRoomService.leaveChatRoomById(provider, providerId, roomId);
+            chatRoomService.leaveChatRoomById(userId, roomId);
 
             return ResponseEntity.ok(ApiResponse.success("User successfully left the room"));
         } catch (Exception e) {
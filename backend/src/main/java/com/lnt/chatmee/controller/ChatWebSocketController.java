@@ -3,7 +3,6 @@ package com.lnt.chatmee.controller;
 
 import java.time.LocalDateTime;
 import java.util.Map;
-import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,11 +15,19 @@ import org.springframework.stereotype.Controller;
 import com.lnt.chatmee.dto.request.ChatMessageRequest;
 import com.lnt.chatmee.dto.response.ChatMessageResponse;
 import com.lnt.chatmee.dto.StompError;
+import com.lnt.chatmee.dto.UserSummary;
+import com.lnt.chatmee.exception.ForbiddenActionException;
 import com.lnt.chatmee.model.Message;
-import com.lnt.chatmee.model.User;
-import com.lnt.chatmee.repository.UserRepository;
-import com.lnt.chatmee.service.MessageService;
+import com.lnt.chatmee.security.SessionIdentityInterceptor;
+import com.lnt.chatmee.service.HotRoomBuffer;
+import com.lnt.chatmee.service.MessageBatchWriter;
+import com.lnt.chatmee.service.MessageJournal;
 import com.lnt.chatmee.service.ParticipantService;
+import com.lnt.chatmee.service.RoomBroadcaster;
+import com.lnt.chatmee.service.RoomSequenceService;
+import com.lnt.chatmee.service.UserIdentityCache;
+import com.lnt.chatmee.util.SessionDestinations;
+import com.lnt.chatmee.util.TimeOrderedIdGenerator;
 
 import lombok.RequiredArgsConstructor;
 
@@ -31,24 +38,27 @@ public class ChatWebSocketController {
     private static final Logger logger = LoggerFactory.getLogger(ChatWebSocketController.class);
     
     private final SimpMessagingTemplate messagingTemplate;
-    private final MessageService messageService;
-    private final UserRepository userRepository;
+    private final MessageBatchWriter messageBatchWriter;
+    private final MessageJournal messageJournal;
+    private final UserIdentityCache userIdentityCache;
     private final ParticipantService participantService;
+    private final RoomBroadcaster roomBroadcaster;
+    private final RoomSequenceService roomSequenceService;
+    private final TimeOrderedIdGenerator idGenerator;
+    private final HotRoomBuffer hotRoomBuffer;
 
     @MessageMapping("/chat.sendMessage")
-    public void sendMessage(@Payload ChatMessageRequest request, @Header("simpSessionAttributes") Map<String, Object> sessionAttributes) {
+    public void sendMessage(@Payload ChatMessageRequest request, @Header("simpSessionId") String sessionId,
+            @Header("simpSessionAttributes") Map<String, Object> sessionAttributes) {
         logger.info("🔵 RECEIVED MESSAGE REQUEST: roomId={}, content={}, tempId={}, senderId={}", 
             request.getRoomId(), request.getContent(), request.getTempId(), request.getSenderId());
         try {
-            // Get user from senderId in request (sent from frontend)
-            String userId = request.getSenderId();
-            if (userId == null || userId.isEmpty()) {
-                logger.error("❌ SenderId is missing in request");
+            // Resolve the sender from the session-bound identity (no I/O once the session is connected)
+            UserSummary user = resolveSender(request, sessionAttributes);
+            if (user == null) {
+                logger.error("❌ Session is not bound to a user");
                 return;
             }
-            
-            User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found: " + userId));
 
             // Verify user is participant of the room
             if (!participantService.isUserParticipant(request.getRoomId(), user.getId())) {
@@ -57,15 +67,17 @@ public class ChatWebSocketController {
                 return;
             }
 
-            // Create message object
+            // Create message object; the id is time-ordered and seq lets clients detect gaps and re-order
+            LocalDateTime now = LocalDateTime.now();
             Message message = Message.builder()
-                .id(UUID.randomUUID().toString())
+                .id(idGenerator.nextId())
                 .chatRoomId(request.getRoomId())
+                .seq(roomSequenceService.next(request.getRoomId()))
                 .senderId(user.getId())
                 .type(request.getMessageType())
                 .content(request.getContent())
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
+                .createdAt(now)
+                .updatedAt(now)
                 .isUpdated(false)
                 .isDeleted(false)
                 .build();
@@ -75,6 +87,7 @@ public class ChatWebSocketController {
                 .id(message.getId())
                 .tempId(request.getTempId())
                 .chatRoomId(message.getChatRoomId())
+                .seq(message.getSeq())
                 .senderId(message.getSenderId())
                 .senderName(user.getName())
                 .content(message.getContent())
@@ -85,45 +98,53 @@ public class ChatWebSocketController {
                 .isDeleted(message.isDeleted())
                 .build();
 
-            // STEP 1: Broadcast immediately (fast path - no I/O)
-            logger.info("📤 BROADCASTING message: messageId={}, roomId={}", message.getId(), request.getRoomId());
-            messagingTemplate.convertAndSend("/topic/public/" + request.getRoomId(), response);
-            
-            // STEP 2: Persist asynchronously (slow path - off the hot path)
-            logger.info("🚀 CALLING persistMessageAsync: messageId={}", message.getId());
-            messageService.persistMessageAsync(message);
-            logger.info("✔️ RETURNED from persistMessageAsync (async in progress)");
+            // STEP 1: Record in the local journal so the message survives a crash before it is persisted
+            messageJournal.append(message);
+
+            // STEP 2: Queue for batched persistence right away, so the journal entry is always acknowledged;
+            // from here on the message is accepted and nothing below may report it as failed
+            messageBatchWriter.submit(message);
+            logger.debug("Queued message {} for write-behind", message.getId());
+
+            // STEP 3: Broadcast immediately (fast path - no I/O)
+            try {
+                logger.info("📤 BROADCASTING message: messageId={}, roomId={}", message.getId(), request.getRoomId());
+                roomBroadcaster.broadcast(request.getRoomId(), response);
+                // tempId only matters to the sender's live copy, not to whoever opens the room later
+                hotRoomBuffer.append(request.getRoomId(), response.toBuilder().tempId(null).build());
+            } catch (Exception e) {
+                // the message is persisted anyway; clients see the gap in seq and fill it from history,
+                // and the room buffer may now miss it, so it has to be reloaded from the database
+                logger.error("Failed to broadcast persisted message {} to room {}", message.getId(), request.getRoomId(), e);
+                hotRoomBuffer.evictRoom(request.getRoomId());
+            }
             
         } catch (Exception e) {
             logger.error("❌ Error sending message: ", e);
 
-            // Send error to room (can't use principal.getName() since it's null)
             StompError errorPayload = StompError.builder()
                 .tempId(request.getTempId())
                 .message("Failed to send message: " + e.getMessage())
                 .build();
-            
-            // Broadcast error to the room
-            messagingTemplate.convertAndSend("/topic/errors/" + request.getRoomId(), errorPayload);
+
+            // Only the sender needs to know; the rest of the room never saw the message
+            messagingTemplate.convertAndSendToUser(sessionId, SessionDestinations.ERRORS, errorPayload,
+                SessionDestinations.headers(sessionId));
         }
     }
 
     @MessageMapping("/chat.addUser")
     public void addUser(@Payload ChatMessageRequest request, @Header("simpSessionAttributes") Map<String, Object> sessionAttributes) {
         try {
-            // Get user from senderId in request
-            String userId = request.getSenderId();
-            if (userId == null || userId.isEmpty()) {
-                logger.error("❌ SenderId is missing in addUser request");
+            UserSummary user = resolveSender(request, sessionAttributes);
+            if (user == null) {
+                logger.error("❌ Session is not bound to a user in addUser request");
                 return;
             }
-            
-            User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found: " + userId));
 
             // Create join message
             ChatMessageResponse response = ChatMessageResponse.builder()
-                .id(UUID.randomUUID().toString())
+                .id(idGenerator.nextId())
                 .chatRoomId(request.getRoomId())
                 .senderId(user.getId())
                 .senderName(user.getName())
@@ -136,7 +157,7 @@ public class ChatWebSocketController {
                 .build();
 
             // Broadcast join message
-            messagingTemplate.convertAndSend("/topic/public/" + request.getRoomId(), response);
+            roomBroadcaster.broadcast(request.getRoomId(), response);
             
             logger.info("User {} joined room {}", user.getName(), request.getRoomId());
 
@@ -144,4 +165,17 @@ public class ChatWebSocketController {
             logger.error("Error adding user to chat: ", e);
         }
     }
-}
\ No newline at end of file
+
+    private UserSummary resolveSender(ChatMessageRequest request, Map<String, Object> sessionAttributes) {
+        Object sessionUserId = sessionAttributes != null ? sessionAttributes.get(SessionIdentityInterceptor.SESSION_USER_ID) : null;
+        if (sessionUserId == null) {
+            // every accepted CONNECT binds the user; never trust the senderId sent by the client instead
+            return null;
+        }
+
+        if (request.getSenderId() != null && !request.getSenderId().equals(sessionUserId)) {
+            throw new ForbiddenActionException("Sender does not match the connected user");
+        }
+        return userIdentityCache.resolve(sessionUserId.toString());
+    }
+}
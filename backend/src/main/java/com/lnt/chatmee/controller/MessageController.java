@@ -10,15 +10,14 @@ import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.lnt.chatmee.dto.response.ApiResponse;
 import com.lnt.chatmee.dto.response.ChatMessageResponse;
-import com.lnt.chatmee.exception.UserNotFoundException;
-import com.lnt.chatmee.model.User;
-import com.lnt.chatmee.repository.UserRepository;
+import com.lnt.chatmee.dto.response.MessagePageResponse;
+import com.lnt.chatmee.security.PrincipalUserResolver;
 import com.lnt.chatmee.service.MessageService;
-import com.lnt.chatmee.util.OAuthUtil;
 
 import lombok.RequiredArgsConstructor;
 
@@ -30,21 +29,16 @@ public class MessageController {
     private static final Logger logger = LoggerFactory.getLogger(MessageController.class);
 
     private final MessageService messageService;
-    private final OAuthUtil oAuthUtil;
-    private final UserRepository userRepository;
+    private final PrincipalUserResolver principalUserResolver;
 
     @GetMapping("/room/{roomId}")
     public ResponseEntity<ApiResponse<List<ChatMessageResponse>>> getRecentMessages(
             @PathVariable String roomId,
             @AuthenticationPrincipal OAuth2User principle) {
         try {
-            String provider = oAuthUtil.determineProvider(principle);
-            String providerId = oAuthUtil.getProviderId(principle, provider);
+            String userId = principalUserResolver.userId(principle);
 
-            User user = userRepository.findByProviderAndProviderId(provider, providerId)
-                    .orElseThrow(() -> new UserNotFoundException("Authenticated user not found"));
-
-            List<ChatMessageResponse> messages = messageService.getRecentMessages(roomId, user.getId());
+            List<ChatMessageResponse> messages = messageService.getRecentMessages(roomId, userId);
 
             return ResponseEntity.ok(ApiResponse.success(messages));
         } catch (Exception e) {
@@ -52,4 +46,23 @@ public class MessageController {
             throw e;
         }
     }
+
+    @GetMapping("/room/{roomId}/history")
+    public ResponseEntity<ApiResponse<MessagePageResponse>> getMessageHistory(
+            @PathVariable String roomId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit,
+            @AuthenticationPrincipal OAuth2User principle) {
+        try {
+            String userId = principalUserResolver.userId(principle);
+
+            MessagePageResponse page = messageService.getMessageHistory(roomId, userId, before, after, limit);
+
+            return ResponseEntity.ok(ApiResponse.success(page));
+        } catch (Exception e) {
+            logger.error("Error fetching message history for room: {}", roomId, e);
+            throw e;
+        }
+    }
 }
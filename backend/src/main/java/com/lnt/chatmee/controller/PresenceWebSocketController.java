@@ -1,12 +1,19 @@
 package com.lnt.chatmee.controller;
 
+import java.util.Map;
+
 import com.lnt.chatmee.dto.PresenceMessage;
+import com.lnt.chatmee.dto.RoomPresenceSnapshot;
+import com.lnt.chatmee.security.SessionIdentityInterceptor;
 import com.lnt.chatmee.service.PresenseService;
+import com.lnt.chatmee.service.RoomPresenceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -14,28 +21,43 @@ public class PresenceWebSocketController {
 
     private static final Logger logger = LoggerFactory.getLogger(PresenceWebSocketController.class);
     
-    private final SimpMessagingTemplate messagingTemplate;
     private final PresenseService presenseService;
+    private final RoomPresenceService roomPresenceService;
 
-    public PresenceWebSocketController(SimpMessagingTemplate messagingTemplate, PresenseService presenseService) {
-        this.messagingTemplate = messagingTemplate;
+    public PresenceWebSocketController(PresenseService presenseService, RoomPresenceService roomPresenceService) {
         this.presenseService = presenseService;
+        this.roomPresenceService = roomPresenceService;
     }
 
     @MessageMapping("/presence")
-    public void handlePresenceEvent(@Payload PresenceMessage message) {
-        logger.info("Received presence event: userId={}, online={}", message.getUserId(), message.isOnline());
+    public void handlePresenceEvent(@Payload PresenceMessage message, @Header("simpSessionId") String sessionId,
+            @Header("simpSessionAttributes") Map<String, Object> sessionAttributes) {
+        logger.debug("Received presence event: userId={}, online={}", message.getUserId(), message.isOnline());
         
-        // Update presence service
+        // Clients repeat "online" as a heartbeat; it registers or refreshes this session.
+        // Subscribers are notified through the presence change stream, only when the user's state changes.
         if (message.isOnline()) {
-            presenseService.userConnected(message.getUserId());
+            // the session belongs to the user bound at CONNECT, never to the userId sent by the client
+            Object sessionUserId = sessionAttributes.get(SessionIdentityInterceptor.SESSION_USER_ID);
+            if (sessionUserId == null
+                    || (message.getUserId() != null && !message.getUserId().equals(sessionUserId))) {
+                logger.warn("Ignored presence heartbeat of session {} for user {}", sessionId, message.getUserId());
+                return;
+            }
+            presenseService.sessionConnected(sessionId, sessionUserId.toString());
         } else {
-            presenseService.userDisconnected(message.getUserId());
+            presenseService.sessionDisconnected(sessionId);
         }
-        
-        // Broadcast presence update to all subscribers
-        messagingTemplate.convertAndSend("/topic/presence", message);
-        
-        logger.info("Broadcasted presence update for user: {}", message.getUserId());
     }
-}
\ No newline at end of file
+
+    /**
+     * Answers a SUBSCRIBE to /app/presence/rooms/{roomId} with the room's online members. Clients subscribe
+     * to /topic/presence/{roomId} first so no change between the two is lost.
+     */
+    @SubscribeMapping("/presence/rooms/{roomId}")
+    public RoomPresenceSnapshot roomPresence(@DestinationVariable String roomId,
+            @Header("simpSessionAttributes") Map<String, Object> sessionAttributes) {
+        Object userId = sessionAttributes.get(SessionIdentityInterceptor.SESSION_USER_ID);
+        return roomPresenceService.snapshot(roomId, userId != null ? userId.toString() : null);
+    }
+}
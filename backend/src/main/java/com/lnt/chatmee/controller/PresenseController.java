@@ -1,17 +1,20 @@
 package com.lnt.chatmee.controller;
 
-import java.util.Set;
+import java.util.Collection;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import com.lnt.chatmee.dto.PresenceMessage;
+import com.lnt.chatmee.exception.ForbiddenActionException;
+import com.lnt.chatmee.security.PrincipalUserResolver;
 import com.lnt.chatmee.service.PresenseService;
+import com.lnt.chatmee.service.RoomMembershipCache;
 
 @RestController
 @RequestMapping("/api/v1")
@@ -20,29 +23,42 @@ public class PresenseController {
     private static final Logger logger = LoggerFactory.getLogger(PresenseController.class);
     
     private final PresenseService PresenseService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final RoomMembershipCache roomMembershipCache;
+    private final PrincipalUserResolver principalUserResolver;
 
-    public PresenseController(PresenseService PresenseService, SimpMessagingTemplate messagingTemplate) {
+    public PresenseController(PresenseService PresenseService, RoomMembershipCache roomMembershipCache,
+            PrincipalUserResolver principalUserResolver) {
         this.PresenseService = PresenseService;
-        this.messagingTemplate = messagingTemplate;
+        this.roomMembershipCache = roomMembershipCache;
+        this.principalUserResolver = principalUserResolver;
     }
 
+    /**
+     * Online users, limited to the members of one room when roomId is given. Without it the whole online
+     * set is returned, which grows with the user count; clients should prefer the room-scoped form. The
+     * room-scoped form is only answered for members of the room.
+     */
     @GetMapping("/online-users")
-    public Set<String> getOnlineUsers() {
-        return PresenseService.getOnlineUsers();
+    public Collection<String> getOnlineUsers(@RequestParam(required = false) String roomId,
+            @AuthenticationPrincipal OAuth2User principal) {
+        if (roomId == null) {
+            return PresenseService.getOnlineUsers();
+        }
+        if (!roomMembershipCache.isMember(roomId, principalUserResolver.userId(principal))) {
+            throw new ForbiddenActionException("You are not a participant of this room");
+        }
+        return roomMembershipCache.members(roomId).stream()
+            .filter(PresenseService::isUserOnline)
+            .toList();
     }
 
     @PostMapping("/presence/offline")
-    public void setUserOffline(@RequestBody PresenceMessage presenceMessage) {
-        logger.info("REST API: Setting user offline - userId: {}", presenceMessage.getUserId());
+    public void setUserOffline(@AuthenticationPrincipal OAuth2User principal) {
+        // only the signed-in user can sign themselves off; a user id in the body is ignored
+        String userId = principalUserResolver.userId(principal);
+        logger.info("REST API: Setting user offline - userId: {}", userId);
         
-        // Update presence service
-        PresenseService.userDisconnected(presenceMessage.getUserId());
-        
-        // Broadcast offline status
-        PresenceMessage offlineMessage = new PresenceMessage(presenceMessage.getUserId(), false);
-        messagingTemplate.convertAndSend("/topic/presence", offlineMessage);
-        
-        logger.info("REST API: Broadcasted offline status for user: {}", presenceMessage.getUserId());
+        // Drops all of the user's sessions; subscribers hear about it through the presence change stream
+        PresenseService.userDisconnected(userId);
     }
 }
@@ -1,23 +1,23 @@
 package com.lnt.chatmee.controller;
 
 import com.lnt.chatmee.dto.TypingMessage;
+import com.lnt.chatmee.service.TypingIndicatorService;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 @Controller
 public class TypingController {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final TypingIndicatorService typingIndicatorService;
 
-    public TypingController(SimpMessagingTemplate messagingTemplate) {
-        this.messagingTemplate = messagingTemplate;
+    public TypingController(TypingIndicatorService typingIndicatorService) {
+        this.typingIndicatorService = typingIndicatorService;
     }
 
+    // Events are merged per room and published as a snapshot at a fixed rate, see TypingIndicatorService
     @MessageMapping("/typing")
     public void handleTypingEvent(@Payload TypingMessage message) {
-        String destination = "/topic/typing/" + message.getRoomId();
-        messagingTemplate.convertAndSend(destination, message);
+        typingIndicatorService.onTyping(message.getRoomId(), message.getUserId(), message.isTyping());
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,19 @@
 package com.lnt.chatmee.controller;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.lnt.chatmee.dto.response.ApiResponse;
+import com.lnt.chatmee.dto.response.UserPageResponse;
 import com.lnt.chatmee.dto.response.UserResponse;
-import com.lnt.chatmee.model.User;
 import com.lnt.chatmee.repository.UserRepository;
+import com.lnt.chatmee.service.UserDirectoryService;
 
 import lombok.RequiredArgsConstructor;
 
@@ -22,22 +23,28 @@ import lombok.RequiredArgsConstructor;
 public class UserApiController {
 
     private final UserRepository userRepository;
+    private final UserDirectoryService userDirectoryService;
 
     @GetMapping
-    public ResponseEntity<ApiResponse<List<UserResponse>>> getAllUsers() {
-        List<User> users = userRepository.findAll();
-        List<UserResponse> userResponses = users.stream()
-                .map(this::convertToUserResponse)
-                .collect(Collectors.toList());
+    public ResponseEntity<ApiResponse<UserPageResponse>> getUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        UserPageResponse page = userDirectoryService.getPage(cursor, limit);
+        return ResponseEntity.ok(ApiResponse.success("Users retrived successfully", page));
+    }
 
-        return ResponseEntity.ok(ApiResponse.success("Users retrived successfully", userResponses));
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(userDirectoryService::export);
     }
 
     @GetMapping("/{userId}")
     public ResponseEntity<ApiResponse<UserResponse>> getUserById(@PathVariable String userId) {
         return userRepository.findById(userId)
                 .map(user -> {
-                    UserResponse userResponse = convertToUserResponse(user);
+                    UserResponse userResponse = UserResponse.from(user);
                     return ResponseEntity.ok(ApiResponse.success("User found", userResponse));
                 })
                 .orElse(ResponseEntity.ok(ApiResponse.error("User not found")));
@@ -49,19 +56,9 @@ public class UserApiController {
             @PathVariable String providerId) {
         return userRepository.findByProviderAndProviderId(provider, providerId)
                 .map(user -> {
-                    UserResponse userResponse = convertToUserResponse(user);
+                    UserResponse userResponse = UserResponse.from(user);
                     return ResponseEntity.ok(ApiResponse.success("User found", userResponse));
                 })
                 .orElse(ResponseEntity.ok(ApiResponse.error("User not found")));
     }
-
-    private UserResponse convertToUserResponse(User user) {
-        return UserResponse.builder()
-                .id(user.getId())
-                .name(user.getName())
-                .email(user.getEmail())
-                .avatarUrl(user.getAvatarUrl())
-                .provider(user.getProvider())
-                .build();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.lnt.chatmee.dto;
+
+import java.time.LocalDateTime;
+
+import com.lnt.chatmee.model.ChatRoom.RoomType;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A room as shown in the room list: the fields of {@link com.lnt.chatmee.dto.response.ChatRoomResponse}
+ * minus the member sets, which are replaced by their size. Built by the database, so the sets never leave it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatRoomSummary {
+    private String id;
+    private String roomName;
+    private RoomType roomType;
+    private String description;
+    private String createdBy;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt; // last activity, the sort key of the list
+    private int maxUsers;
+    private int participantCount;
+}
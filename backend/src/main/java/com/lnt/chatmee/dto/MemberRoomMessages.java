@@ -0,0 +1,20 @@
+package com.lnt.chatmee.dto;
+
+import java.util.List;
+
+import com.lnt.chatmee.model.Message;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The latest messages of a room, found through the asking user's participant record. The database only
+ * returns one when the user is a member, so the access check and the page load are one round trip.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberRoomMessages {
+    private List<Message> messages; // newest first
+}
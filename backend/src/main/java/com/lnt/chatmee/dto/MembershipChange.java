@@ -0,0 +1,21 @@
+package com.lnt.chatmee.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MembershipChange {
+    private String nodeId;
+    private String roomId;
+    private String userId;
+    private Action action;
+
+    public enum Action {
+        ADDED,
+        REMOVED,
+        ROOM_DELETED,
+    }
+}
@@ -0,0 +1,20 @@
+package com.lnt.chatmee.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Presence changes of one flush window, published to /topic/presence/{roomId}. A user who flipped back
+ * and forth within the window appears in neither list.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceDelta {
+    private String roomId;
+    private List<String> online;
+    private List<String> offline;
+}
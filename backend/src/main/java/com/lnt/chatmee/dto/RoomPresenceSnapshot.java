@@ -0,0 +1,19 @@
+package com.lnt.chatmee.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Members of a room that are online, answered once when a client subscribes to the room's presence.
+ * Later changes arrive as {@link PresenceDelta} frames on /topic/presence/{roomId}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomPresenceSnapshot {
+    private String roomId;
+    private List<String> onlineUserIds;
+}
@@ -12,4 +12,5 @@ import lombok.NoArgsConstructor;
 public class StompError {
     private String tempId;
     private String message;
+    private Long retryAfterMs; // set when the request was refused under load and may be retried
 }
\ No newline at end of file
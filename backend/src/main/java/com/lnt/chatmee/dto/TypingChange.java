@@ -0,0 +1,15 @@
+package com.lnt.chatmee.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingChange {
+    private String nodeId;
+    private String roomId;
+    private String userId;
+    private boolean typing;
+}
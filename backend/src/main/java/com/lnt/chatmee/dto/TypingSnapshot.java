@@ -0,0 +1,18 @@
+package com.lnt.chatmee.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Everyone currently typing in a room, published to /topic/typing/{roomId} whenever the set changes.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingSnapshot {
+    private String roomId;
+    private List<String> userIds;
+}
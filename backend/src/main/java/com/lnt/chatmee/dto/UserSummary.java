@@ -0,0 +1,25 @@
+package com.lnt.chatmee.dto;
+
+import com.lnt.chatmee.model.User;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The small slice of a user that message rendering needs, cheap enough to keep in memory.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+    private String id;
+    private String name;
+    private String avatarUrl;
+
+    public static UserSummary from(User user) {
+        return new UserSummary(user.getId(), user.getName(), user.getAvatarUrl());
+    }
+}
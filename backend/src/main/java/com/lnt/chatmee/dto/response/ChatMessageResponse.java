@@ -2,16 +2,21 @@ package com.lnt.chatmee.dto.response;
 
 import com.lnt.chatmee.model.Message.MessageType;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
 public class ChatMessageResponse {
     
     private String id;
     private String tempId;
     private String chatRoomId;
+    private long seq;
     private String senderId;
     private String senderName;
     private String content;
@@ -0,0 +1,16 @@
+package com.lnt.chatmee.dto.response;
+
+import java.util.List;
+
+import com.lnt.chatmee.dto.ChatRoomSummary;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ChatRoomPageResponse {
+    private List<ChatRoomSummary> rooms; // most recently active first
+    private String nextCursor; // pass as "cursor" to load the next page, null when there is none
+    private boolean hasMore;
+}
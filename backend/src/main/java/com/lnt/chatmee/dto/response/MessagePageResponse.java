@@ -0,0 +1,15 @@
+package com.lnt.chatmee.dto.response;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class MessagePageResponse {
+    private List<ChatMessageResponse> messages; // newest first
+    private String olderCursor; // pass as "before" to load the previous page, null when there is none
+    private String newerCursor; // pass as "after" to load messages newer than this page
+    private boolean hasMore; // more messages exist in the direction that was requested
+}
@@ -0,0 +1,14 @@
+package com.lnt.chatmee.dto.response;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class UserPageResponse {
+    private List<UserResponse> users; // ordered by id
+    private String nextCursor; // pass as "cursor" to load the next page, null when there is none
+    private boolean hasMore;
+}
@@ -1,5 +1,7 @@
 package com.lnt.chatmee.dto.response;
 
+import com.lnt.chatmee.model.User;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,4 +17,14 @@ public class UserResponse {
     private String email;
     private String avatarUrl;
     private String provider;
+
+    public static UserResponse from(User user) {
+        return UserResponse.builder()
+            .id(user.getId())
+            .name(user.getName())
+            .email(user.getEmail())
+            .avatarUrl(user.getAvatarUrl())
+            .provider(user.getProvider())
+            .build();
+    }
 }
\ No newline at end of file
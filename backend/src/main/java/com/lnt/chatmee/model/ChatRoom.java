@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.Set;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -18,6 +19,9 @@ import lombok.Setter;
 @AllArgsConstructor
 @Builder
 @Document(collection = "chat_rooms")
+@CompoundIndex(name = "participants_activity_idx", def = "{'participants': 1, 'isActive': 1, 'lastActivity': -1, '_id': -1}")
+@CompoundIndex(name = "type_active_idx", def = "{'type': 1, 'isActive': 1}")
+@CompoundIndex(name = "creator_active_idx", def = "{'createdBy': 1, 'isActive': 1}")
 public class ChatRoom {
     
     @Id
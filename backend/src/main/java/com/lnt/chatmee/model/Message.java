@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -18,6 +19,10 @@ import lombok.Setter;
 @AllArgsConstructor
 @Builder
 @Document(collection = "messages")
+@CompoundIndex(name = "room_seq_idx", def = "{'chatRoomId': 1, 'seq': -1}")
+@CompoundIndex(name = "room_history_idx", def = "{'chatRoomId': 1, 'isDeleted': 1, 'createdAt': -1, '_id': -1}")
+@CompoundIndex(name = "room_created_idx", def = "{'chatRoomId': 1, 'createdAt': 1}")
+@CompoundIndex(name = "sender_room_idx", def = "{'senderId': 1, 'chatRoomId': 1}")
 public class Message {
     
     @Id
@@ -25,6 +30,8 @@ public class Message {
 
     private String chatRoomId;
 
+    private long seq; // per-room sequence number, increases by one for every message in the room
+
     private String senderId;
 
     private MessageType type;
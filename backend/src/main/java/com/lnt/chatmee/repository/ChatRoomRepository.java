@@ -1,17 +1,25 @@
 package com.lnt.chatmee.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.mongodb.repository.Aggregation;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import com.lnt.chatmee.dto.ChatRoomSummary;
 import com.lnt.chatmee.model.ChatRoom;
 import com.lnt.chatmee.model.ChatRoom.RoomType;
 
 @Repository
 public interface ChatRoomRepository extends MongoRepository<ChatRoom, String> {
 
+    // Shapes a room into a ChatRoomSummary, with the member set replaced by its size
+    String SUMMARY_PROJECTION = "{ '$project': { 'roomName': '$name', 'roomType': '$type', 'description': 1, 'createdBy': 1, "
+        + "'createdAt': 1, 'updatedAt': '$lastActivity', 'maxUsers': '$maxParticipants', "
+        + "'participantCount': { '$size': { '$ifNull': [ '$participants', [] ] } } } }";
+
     Optional<ChatRoom> findByIdAndParticipantsContaining(String roomId, String userId);
     
     List<ChatRoom> findByTypeAndIsActiveTrue(RoomType type);
@@ -21,5 +29,22 @@ public interface ChatRoomRepository extends MongoRepository<ChatRoom, String> {
     List<ChatRoom> findByCreatedByAndIsActiveTrue(String userId);
 
     List<ChatRoom> findByNameContainingIgnoreCaseAndTypeAndIsActiveTrue(String name, RoomType type);
-    
+
+    // Keyset pagination over (lastActivity, _id) for the room list, backed by participants_activity_idx.
+    // The projection runs in the database, so member sets are counted there and never sent to us.
+    @Aggregation(pipeline = {
+        "{ '$match': { 'participants': ?0, 'isActive': true } }",
+        "{ '$sort': { 'lastActivity': -1, '_id': -1 } }",
+        "{ '$limit': ?1 }",
+        SUMMARY_PROJECTION
+    })
+    List<ChatRoomSummary> findSummariesByParticipant(String userId, int limit);
+
+    @Aggregation(pipeline = {
+        "{ '$match': { 'participants': ?0, 'isActive': true, '$or': [ { 'lastActivity': { '$lt': ?1 } }, { 'lastActivity': ?1, '_id': { '$lt': ?2 } } ] } }",
+        "{ '$sort': { 'lastActivity': -1, '_id': -1 } }",
+        "{ '$limit': ?3 }",
+        SUMMARY_PROJECTION
+    })
+    List<ChatRoomSummary> findSummariesByParticipantBefore(String userId, LocalDateTime lastActivity, String id, int limit);
 }
@@ -2,10 +2,11 @@ package com.lnt.chatmee.repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Page;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.lnt.chatmee.model.Message;
@@ -13,9 +14,18 @@ import com.lnt.chatmee.model.Message;
 @Repository
 public interface MessageRepository extends MongoRepository<Message, String> {
     
-    // Retrieve message for a specific chat room, ordered by creation time in descending order
-    // use for loading older messages with pagination (e.g.: infinite roll in chat history)
-    Page<Message> findByChatRoomIdOrderByCreatedAtDesc(String chatRoomId, Pageable pageable);
+    // Keyset pagination over (createdAt, _id) for the chat history, backed by room_history_idx.
+    // Each page seeks straight to the cursor, so deep pages cost the same as the first one.
+    // Only the page size of the Pageable is used; the offset is always 0.
+    List<Message> findByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDescIdDesc(String chatRoomId, Pageable pageable);
+
+    @Query(value = "{ 'chatRoomId': ?0, 'isDeleted': false, '$or': [ { 'createdAt': { '$lt': ?1 } }, { 'createdAt': ?1, '_id': { '$lt': ?2 } } ] }",
+            sort = "{ 'createdAt': -1, '_id': -1 }")
+    List<Message> findPageBefore(String chatRoomId, LocalDateTime createdAt, String id, Pageable pageable);
+
+    @Query(value = "{ 'chatRoomId': ?0, 'isDeleted': false, '$or': [ { 'createdAt': { '$gt': ?1 } }, { 'createdAt': ?1, '_id': { '$gt': ?2 } } ] }",
+            sort = "{ 'createdAt': 1, '_id': 1 }")
+    List<Message> findPageAfter(String chatRoomId, LocalDateTime createdAt, String id, Pageable pageable);
 
     // Retrieve all messages in a chat room that were created after a specific time
     // ordered by creation time in ascending order
@@ -36,4 +46,7 @@ public interface MessageRepository extends MongoRepository<Message, String> {
     
     // Find recent messages with limit for initial chat load
     List<Message> findTop50ByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc(String chatRoomId);
+
+    // Latest sequence number in a room, used to seed the room sequence counter
+    Optional<Message> findTopByChatRoomIdOrderBySeqDesc(String chatRoomId);
 }
@@ -1,11 +1,15 @@
 package com.lnt.chatmee.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.mongodb.repository.Aggregation;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import com.lnt.chatmee.dto.MemberRoomMessages;
 import com.lnt.chatmee.model.Participant;
 
 @Repository
@@ -13,12 +17,33 @@ public interface ParticipantRepository extends MongoRepository<Participant, Stri
 
     List<Participant> findByChatRoomId(String chatRoomId);
 
+    // Only the userId field is loaded, used to build the in-memory membership index
+    @Query(value = "{ 'chatRoomId': ?0 }", fields = "{ 'userId': 1 }")
+    List<Participant> findUserIdsByChatRoomId(String chatRoomId);
+
     List<Participant> findByUserId(String userId);
 
+    // Only the room and user ids are loaded, used to route presence changes to the rooms of their users
+    @Query(value = "{ 'userId': { '$in': ?0 } }", fields = "{ 'chatRoomId': 1, 'userId': 1 }")
+    List<Participant> findRoomIdsByUserIdIn(Collection<String> userIds);
+
     Optional<Participant> findByChatRoomIdAndUserId(String chatRoomId, String userId);
 
     boolean existsByChatRoomIdAndUserId(String chatRoomId, String userId);
 
+    // Opening a room on a cold membership cache: the participant record (room_user_index) gates the same
+    // page findTop50ByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc returns (room_history_idx), so a
+    // non-member gets nothing back and a member gets the page in the same round trip
+    @Aggregation(pipeline = {
+        "{ '$match': { 'chatRoomId': ?0, 'userId': ?1 } }",
+        "{ '$limit': 1 }",
+        "{ '$lookup': { 'from': 'messages', 'pipeline': [ "
+            + "{ '$match': { 'chatRoomId': ?0, 'isDeleted': false } }, { '$sort': { 'createdAt': -1 } }, { '$limit': 50 } ], "
+            + "'as': 'messages' } }",
+        "{ '$project': { '_id': 0, 'messages': 1 } }"
+    })
+    Optional<MemberRoomMessages> findRecentMessagesOfMember(String chatRoomId, String userId);
+
     // the participant count will not exceed the max value of integer
     // but count() operations in MongoDB naturally return long
     // we'll not need lots of counts so the memory usage not too much compare to Int
@@ -26,4 +51,6 @@ public interface ParticipantRepository extends MongoRepository<Participant, Stri
     Long countByChatRoomId(String chatRoomId);
 
     void deleteByChatRoomIdAndUserId(String chatRoomId, String userId);
+
+    void deleteByChatRoomId(String chatRoomId);
 } 
\ No newline at end of file
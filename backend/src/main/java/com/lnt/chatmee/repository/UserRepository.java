@@ -1,8 +1,14 @@
 package com.lnt.chatmee.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.lnt.chatmee.model.User;
@@ -10,7 +16,27 @@ import com.lnt.chatmee.model.User;
 @Repository
 public interface UserRepository extends MongoRepository<User, String> {
 
+    // fields of UserResponse, so directory reads never load anything else
+    String DIRECTORY_FIELDS = "{ 'name': 1, 'email': 1, 'avatarUrl': 1, 'provider': 1 }";
+
     Optional<User> findByEmail(String email);
 
     Optional<User> findByProviderAndProviderId(String provider, String providerId);
+
+    // Batch lookup of the fields needed to render senders, in a single $in query
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'name': 1, 'avatarUrl': 1 }")
+    List<User> findSummariesByIdIn(Collection<String> ids);
+
+    // Keyset pagination of the user directory by _id: every page is a seek on the primary key index,
+    // so deep pages cost the same as the first one. Only the page size of the Pageable is used.
+    @Query(value = "{}", sort = "{ '_id': 1 }", fields = DIRECTORY_FIELDS)
+    List<User> findDirectoryPage(Pageable pageable);
+
+    @Query(value = "{ '_id': { '$gt': ?0 } }", sort = "{ '_id': 1 }", fields = DIRECTORY_FIELDS)
+    List<User> findDirectoryPageAfter(String id, Pageable pageable);
+
+    // The whole directory over one cursor, fetched in batches; the stream must be closed by the caller
+    @Meta(cursorBatchSize = 500)
+    @Query(value = "{}", sort = "{ '_id': 1 }", fields = DIRECTORY_FIELDS)
+    Stream<User> streamDirectory();
 }
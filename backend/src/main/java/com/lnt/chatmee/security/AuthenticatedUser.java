@@ -0,0 +1,29 @@
+package com.lnt.chatmee.security;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+
+/**
+ * OAuth2 principal that also carries our own user id, resolved once when the user logs in.
+ * It is stored in the HTTP session with the rest of the authentication, so requests never have to map
+ * the provider id back to a user again.
+ */
+public class AuthenticatedUser extends DefaultOAuth2User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String userId;
+
+    public AuthenticatedUser(Collection<? extends GrantedAuthority> authorities, Map<String, Object> attributes,
+            String nameAttributeKey, String userId) {
+        super(authorities, attributes, nameAttributeKey);
+        this.userId = userId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,87 @@
+package com.lnt.chatmee.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Component;
+
+import com.lnt.chatmee.exception.UserNotFoundException;
+import com.lnt.chatmee.model.User;
+import com.lnt.chatmee.repository.UserRepository;
+import com.lnt.chatmee.util.OAuthUtil;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Maps the authenticated principal of a REST request to our user id.
+ *
+ * Principals created at login are {@link AuthenticatedUser}s and carry the id themselves. Sessions that
+ * were opened before that still hold a plain OAuth2 principal; their provider id is looked up once and kept
+ * in a bounded LRU. A provider id never moves to another user, so the entries need no expiry.
+ */
+@Component
+public class PrincipalUserResolver {
+
+    private final UserRepository userRepository;
+    private final OAuthUtil oAuthUtil;
+    private final Map<String, String> userIds;
+
+    private final Counter principalHits;
+    private final Counter cacheHits;
+    private final Counter databaseLookups;
+
+    public PrincipalUserResolver(UserRepository userRepository,
+            OAuthUtil oAuthUtil,
+            MeterRegistry meterRegistry,
+            @Value("${app.principal-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.oAuthUtil = oAuthUtil;
+        this.userIds = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.principalHits = lookupCounter(meterRegistry, "principal");
+        this.cacheHits = lookupCounter(meterRegistry, "cache");
+        this.databaseLookups = lookupCounter(meterRegistry, "database");
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("chatmee.principal.lookups")
+            .tag("source", source)
+            .description("Principals mapped to a user id, by where the id was found")
+            .register(meterRegistry);
+    }
+
+    public String userId(OAuth2User principal) {
+        if (principal instanceof AuthenticatedUser) {
+            principalHits.increment();
+            return ((AuthenticatedUser) principal).getUserId();
+        }
+
+        String provider = oAuthUtil.determineProvider(principal);
+        String providerId = oAuthUtil.getProviderId(principal, provider);
+        String key = provider + ":" + providerId;
+        String userId;
+        synchronized (userIds) {
+            userId = userIds.get(key);
+        }
+        if (userId != null) {
+            cacheHits.increment();
+            return userId;
+        }
+
+        databaseLookups.increment();
+        userId = userRepository.findByProviderAndProviderId(provider, providerId)
+            .map(User::getId)
+            .orElseThrow(() -> new UserNotFoundException("Authenticated user not found"));
+        synchronized (userIds) {
+            userIds.put(key, userId);
+        }
+        return userId;
+    }
+}
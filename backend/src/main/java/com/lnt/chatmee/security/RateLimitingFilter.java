@@ -1,11 +1,14 @@
 package com.lnt.chatmee.security;
 
+import com.lnt.chatmee.service.RateLimitDecision;
+import com.lnt.chatmee.service.RateLimitTier;
 import com.lnt.chatmee.service.RateLimitingService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -29,8 +32,17 @@ public class RateLimitingFilter extends OncePerRequestFilter {
         boolean isAuthenticated = authentication != null && authentication.isAuthenticated() && !"anonymousUser".equals(authentication.getPrincipal());
         
         String key = isAuthenticated ? authentication.getName() : clientIp;
+        RateLimitTier tier = isAuthenticated ? RateLimitTier.AUTHENTICATED : RateLimitTier.PUBLIC;
 
-        if (!rateLimitingService.isAllowed(key, isAuthenticated)) {
+        RateLimitDecision decision = rateLimitingService.check(key, tier);
+        if (decision.getLimit() > 0) {
+            response.setHeader("X-RateLimit-Limit", Long.toString(decision.getLimit()));
+            response.setHeader("X-RateLimit-Remaining", Long.toString(decision.getRemaining()));
+            response.setHeader("X-RateLimit-Reset", Long.toString(toSeconds(decision.getResetMillis())));
+        }
+
+        if (!decision.isAllowed()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(toSeconds(decision.getRetryAfterMillis())));
             response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
             response.getWriter().write("Too many requests");
             return;
@@ -39,6 +51,11 @@ public class RateLimitingFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // headers carry whole seconds, rounded up so clients never retry too early
+    private static long toSeconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+
     private String getClientIp(HttpServletRequest request) {
         String xfHeader = request.getHeader("X-Forwarded-For");
         if (xfHeader == null) {
@@ -0,0 +1,113 @@
+package com.lnt.chatmee.security;
+
+import java.security.Principal;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.lnt.chatmee.exception.UserNotFoundException;
+import com.lnt.chatmee.service.RoomMembershipCache;
+import com.lnt.chatmee.service.RoomPresenceService;
+import com.lnt.chatmee.service.UserIdentityCache;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Resolves the user once on STOMP CONNECT from the authenticated handshake principal and binds them to the
+ * WebSocket session, so later frames from the same session can be attributed without a database lookup.
+ * A CONNECT without an authenticated user is refused, and so is a SUBSCRIBE to the presence topic of a room
+ * the session's user is not a member of.
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionIdentityInterceptor implements ChannelInterceptor {
+
+    public static final String SESSION_USER_ID = "userId";
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionIdentityInterceptor.class);
+
+    private final UserIdentityCache userIdentityCache;
+    private final PrincipalUserResolver principalUserResolver;
+    private final RoomMembershipCache roomMembershipCache;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && accessor.getCommand() == StompCommand.SUBSCRIBE) {
+            checkPresenceSubscription(accessor);
+            return message;
+        }
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+
+        // the identity comes from the authenticated HTTP handshake, never from anything the client sends
+        OAuth2User principal = oAuth2UserOf(accessor.getUser());
+        Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+        if (principal == null || sessionAttributes == null) {
+            logger.warn("Refused CONNECT of session {} without an authenticated user", accessor.getSessionId());
+            throw new AccessDeniedException("WebSocket connections require an authenticated user");
+        }
+
+        String userId;
+        try {
+            userId = principalUserResolver.userId(principal);
+            userIdentityCache.bindSession(userId);
+        } catch (UserNotFoundException e) {
+            logger.warn("Refused CONNECT of session {}: authenticated user not found", accessor.getSessionId());
+            throw new AccessDeniedException("Authenticated user not found");
+        }
+        sessionAttributes.put(SESSION_USER_ID, userId);
+        logger.debug("Bound user {} to session {}", userId, accessor.getSessionId());
+        return message;
+    }
+
+    // a room's presence deltas name its online members, so only members may follow them
+    private void checkPresenceSubscription(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(RoomPresenceService.ROOM_PRESENCE_PREFIX)) {
+            return;
+        }
+        String roomId = destination.substring(RoomPresenceService.ROOM_PRESENCE_PREFIX.length());
+        Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+        Object userId = sessionAttributes != null ? sessionAttributes.get(SESSION_USER_ID) : null;
+        if (userId == null || !roomMembershipCache.isMember(roomId, userId.toString())) {
+            logger.warn("Refused presence subscription of session {} to room {}", accessor.getSessionId(), roomId);
+            throw new AccessDeniedException("Not a participant of this room");
+        }
+    }
+
+    private static OAuth2User oAuth2UserOf(Principal user) {
+        if (user instanceof Authentication && ((Authentication) user).getPrincipal() instanceof OAuth2User) {
+            return (OAuth2User) ((Authentication) user).getPrincipal();
+        }
+        return null;
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        Map<String, Object> sessionAttributes = StompHeaderAccessor.wrap(event.getMessage()).getSessionAttributes();
+        if (sessionAttributes == null) {
+            return;
+        }
+
+        // remove() makes sure a session is only released once even if several disconnect events arrive
+        Object userId = sessionAttributes.remove(SESSION_USER_ID);
+        if (userId != null) {
+            userIdentityCache.unbindSession(userId.toString());
+        }
+    }
+}
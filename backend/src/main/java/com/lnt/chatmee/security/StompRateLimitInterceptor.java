@@ -0,0 +1,263 @@
+package com.lnt.chatmee.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.dto.StompError;
+import com.lnt.chatmee.dto.request.ChatMessageRequest;
+import com.lnt.chatmee.util.SessionDestinations;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Flood control for STOMP SEND frames, kept entirely in memory.
+ *
+ * Chat, typing and presence frames each have their own token bucket per session and per user, so a client
+ * cannot flood a room's fan-out from one tab, nor from many tabs at once. A user's budget is a multiple of a
+ * session's to leave room for a few devices. Refused chat messages are answered on the session's error
+ * destination with their tempId and a retry hint; typing and presence refusals get at most one notice per
+ * second, since answering every dropped keystroke would be a flood of its own.
+ */
+@Component
+public class StompRateLimitInterceptor implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StompRateLimitInterceptor.class);
+
+    private static final long NOTICE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final Budget[] sessionBudgets = new Budget[Kind.values().length];
+    private final Budget[] userBudgets = new Budget[Kind.values().length];
+
+    private final Map<String, Buckets> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Buckets> users = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> refused = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public StompRateLimitInterceptor(@Lazy SimpMessagingTemplate messagingTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.websocket.rate-limit.chat.per-second:5}") double chatPerSecond,
+            @Value("${app.websocket.rate-limit.chat.burst:10}") int chatBurst,
+            @Value("${app.websocket.rate-limit.typing.per-second:5}") double typingPerSecond,
+            @Value("${app.websocket.rate-limit.typing.burst:10}") int typingBurst,
+            @Value("${app.websocket.rate-limit.presence.per-second:0.2}") double presencePerSecond,
+            @Value("${app.websocket.rate-limit.presence.burst:3}") int presenceBurst,
+            @Value("${app.websocket.rate-limit.user-multiplier:3}") int userMultiplier) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        budget(Kind.CHAT, chatPerSecond, chatBurst, userMultiplier);
+        budget(Kind.TYPING, typingPerSecond, typingBurst, userMultiplier);
+        budget(Kind.PRESENCE, presencePerSecond, presenceBurst, userMultiplier);
+    }
+
+    private void budget(Kind kind, double perSecond, int burst, int userMultiplier) {
+        sessionBudgets[kind.ordinal()] = new Budget(perSecond, burst);
+        userBudgets[kind.ordinal()] = new Budget(perSecond * userMultiplier, burst * userMultiplier);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.SEND || accessor.getSessionId() == null) {
+            return message;
+        }
+        Kind kind = Kind.of(accessor.getDestination());
+        if (kind == null) {
+            return message;
+        }
+
+        long now = System.nanoTime();
+        String sessionId = accessor.getSessionId();
+        Buckets sessionBuckets = sessions.computeIfAbsent(sessionId, id -> new Buckets(sessionBudgets, now));
+        Buckets limiting = null;
+        String scope = null;
+        if (!sessionBuckets.tryTake(kind, now)) {
+            limiting = sessionBuckets;
+            scope = "session";
+        } else {
+            String userId = userIdOf(accessor);
+            Buckets userBuckets = userId != null ? users.computeIfAbsent(userId, id -> new Buckets(userBudgets, now)) : null;
+            if (userBuckets != null && !userBuckets.tryTake(kind, now)) {
+                // the session's token is spent anyway, which only makes this session back off sooner
+                limiting = userBuckets;
+                scope = "user";
+            }
+        }
+        if (limiting == null) {
+            return message;
+        }
+
+        refusedCounter(kind, scope).increment();
+        if (kind == Kind.CHAT || sessionBuckets.noticeDue(now)) {
+            notify(message, accessor, kind, limiting.retryAfterMillis(kind, now));
+        }
+        return null;
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+        Map<String, Object> sessionAttributes = StompHeaderAccessor.wrap(event.getMessage()).getSessionAttributes();
+        Object userId = sessionAttributes != null ? sessionAttributes.get(SessionIdentityInterceptor.SESSION_USER_ID) : null;
+        if (userId != null) {
+            // a user whose buckets have refilled costs nothing to forget; one still throttled is kept
+            long now = System.nanoTime();
+            users.computeIfPresent(userId.toString(), (id, buckets) -> buckets.isFull(now) ? null : buckets);
+        }
+    }
+
+    private void notify(Message<?> message, StompHeaderAccessor accessor, Kind kind, long retryAfterMs) {
+        String sessionId = accessor.getSessionId();
+        try {
+            StompError.StompErrorBuilder error = StompError.builder()
+                .message("Too many " + kind.label + " frames, slow down")
+                .retryAfterMs(retryAfterMs);
+            if (kind == Kind.CHAT && message.getPayload() instanceof byte[] payload) {
+                error.tempId(objectMapper.readValue(payload, ChatMessageRequest.class).getTempId());
+            }
+            messagingTemplate.convertAndSendToUser(sessionId, SessionDestinations.ERRORS, error.build(),
+                SessionDestinations.headers(sessionId));
+        } catch (Exception e) {
+            logger.warn("Rate limited frame to {} from session {} but could not notify the sender",
+                accessor.getDestination(), sessionId, e);
+        }
+    }
+
+    private Counter refusedCounter(Kind kind, String scope) {
+        return refused.computeIfAbsent(kind.label + ':' + scope, key -> Counter.builder("chatmee.inbound.rate_limited")
+            .tag("destination", kind.label)
+            .tag("scope", scope)
+            .description("Inbound frames refused by the per-session and per-user rate limits")
+            .register(meterRegistry));
+    }
+
+    private static String userIdOf(StompHeaderAccessor accessor) {
+        Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+        Object userId = sessionAttributes != null ? sessionAttributes.get(SessionIdentityInterceptor.SESSION_USER_ID) : null;
+        return userId != null ? userId.toString() : null;
+    }
+
+    private enum Kind {
+        CHAT("chat"),
+        TYPING("typing"),
+        PRESENCE("presence");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        private static Kind of(String destination) {
+            if (destination == null) {
+                return null;
+            }
+            if (destination.startsWith("/app/chat.")) {
+                return CHAT;
+            }
+            if (destination.startsWith("/app/typing")) {
+                return TYPING;
+            }
+            if (destination.startsWith("/app/presence")) {
+                return PRESENCE;
+            }
+            return null;
+        }
+    }
+
+    private static final class Budget {
+        private final double tokensPerNano;
+        private final double capacity;
+
+        private Budget(double perSecond, int burst) {
+            this.tokensPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, burst);
+        }
+    }
+
+    /**
+     * One token bucket per destination kind, all starting full.
+     */
+    private static final class Buckets {
+        private final Budget[] budgets;
+        private final double[] tokens;
+        private final long[] refilledAt;
+        private long lastNoticeAt;
+
+        private Buckets(Budget[] budgets, long now) {
+            this.budgets = budgets;
+            this.tokens = new double[budgets.length];
+            this.refilledAt = new long[budgets.length];
+            for (int i = 0; i < budgets.length; i++) {
+                tokens[i] = budgets[i].capacity;
+                refilledAt[i] = now;
+            }
+            this.lastNoticeAt = now - NOTICE_INTERVAL_NANOS;
+        }
+
+        private synchronized boolean tryTake(Kind kind, long now) {
+            int i = kind.ordinal();
+            refill(i, now);
+            if (tokens[i] < 1) {
+                return false;
+            }
+            tokens[i] -= 1;
+            return true;
+        }
+
+        private synchronized long retryAfterMillis(Kind kind, long now) {
+            int i = kind.ordinal();
+            refill(i, now);
+            double missing = Math.max(0, 1 - tokens[i]);
+            return (long) Math.ceil(missing / budgets[i].tokensPerNano / TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        private synchronized boolean noticeDue(long now) {
+            if (now - lastNoticeAt < NOTICE_INTERVAL_NANOS) {
+                return false;
+            }
+            lastNoticeAt = now;
+            return true;
+        }
+
+        private synchronized boolean isFull(long now) {
+            for (int i = 0; i < tokens.length; i++) {
+                refill(i, now);
+                if (tokens[i] < budgets[i].capacity) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void refill(int i, long now) {
+            long elapsed = now - refilledAt[i];
+            if (elapsed > 0) {
+                tokens[i] = Math.min(budgets[i].capacity, tokens[i] + elapsed * budgets[i].tokensPerNano);
+                refilledAt[i] = now;
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.lnt.chatmee.service;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -9,10 +10,21 @@ import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import com.lnt.chatmee.dto.ChatRoomSummary;
 import com.lnt.chatmee.dto.request.CreateChatRoomRequest;
 import com.lnt.chatmee.dto.request.UpdateChatRoomRequest;
+import com.lnt.chatmee.dto.response.ChatRoomPageResponse;
 import com.lnt.chatmee.dto.response.ChatRoomResponse;
 import com.lnt.chatmee.exception.ChatRoomNotFoundException;
 import com.lnt.chatmee.exception.DatabaseOperationException;
@@ -22,11 +34,11 @@ import com.lnt.chatmee.exception.UnauthorizedRoomActionException;
 import com.lnt.chatmee.exception.UserNotFoundException;
 import com.lnt.chatmee.model.ChatRoom;
 import com.lnt.chatmee.model.Participant;
-import com.lnt.chatmee.model.User;
 import com.lnt.chatmee.model.ChatRoom.RoomType;
 import com.lnt.chatmee.repository.ChatRoomRepository;
 import com.lnt.chatmee.repository.ParticipantRepository;
 import com.lnt.chatmee.repository.UserRepository;
+import com.lnt.chatmee.util.KeysetCursor;
 import com.lnt.chatmee.util.ValidationUtil;
 
 import org.springframework.transaction.annotation.Transactional;
@@ -37,25 +49,27 @@ import lombok.RequiredArgsConstructor;
 public class ChatRoomService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatRoomService.class);
+
+    private static final int MAX_PAGE_SIZE = 100;
     
     private final ChatRoomRepository chatRoomRepository;
     private final UserRepository userRepository;
     private final ParticipantService participantService;
     private final ParticipantRepository participantRepository;
+    private final RoomMembershipCache roomMembershipCache;
+    private final HotRoomBuffer hotRoomBuffer;
+    private final MongoTemplate mongoTemplate;
 
-    public ChatRoomResponse createRoom(CreateChatRoomRequest request, String provider, String providerId) {
-
-        User AuthenticatedUser = userRepository.findByProviderAndProviderId(provider, providerId)
-            .orElseThrow(() -> new UserNotFoundException("Authenticated user not found"));
+    public ChatRoomResponse createRoom(CreateChatRoomRequest request, String userId) {
 
         ChatRoom room;
         switch (request.getRoomType()) {
             case DIRECT_MESSAGE:
-                room = createDirectRoom(request, AuthenticatedUser.getId());
+                room = createDirectRoom(request, userId);
                 break;
             case PRIVATE:
             case PUBLIC:
-                room = createConfigurableRoom(request, AuthenticatedUser.getId());
+                room = createConfigurableRoom(request, userId);
                 break;
             default:
                 throw new IllegalArgumentException("Invalid room type: " + request.getRoomType());
@@ -203,22 +217,22 @@ public class ChatRoomService {
     }
 
     @Transactional
-    public void deleteChatRoomById(String provider, String providerId, String roomId) {
+    public void deleteChatRoomById(String userId, String roomId) {
         try {
-            User authenticatedUser = userRepository.findByProviderAndProviderId(provider, providerId)
-            .orElseThrow(() -> new UserNotFoundException("Authenticated user not found"));
-
             // Validate IDs
             ValidationUtil.validateId(roomId, "Room ID");
             
             ChatRoom room = findById(roomId);
 
-            if (!room.getCreatedBy().equals(authenticatedUser.getId())) {
+            if (!room.getCreatedBy().equals(userId)) {
                 throw new UnauthorizedRoomActionException("Only room creator can delete the room");
             }
 
             chatRoomRepository.delete(room);
-            logger.info("Room {} deleted by user {}", roomId, authenticatedUser.getId());
+            participantRepository.deleteByChatRoomId(roomId);
+            roomMembershipCache.removeRoom(roomId);
+            hotRoomBuffer.evictRoom(roomId);
+            logger.info("Room {} deleted by user {}", roomId, userId);
             
         } catch (ChatRoomNotFoundException | UnauthorizedRoomActionException e) {
             throw e;
@@ -229,33 +243,56 @@ public class ChatRoomService {
     }
 
     @Transactional(readOnly = true)
-    public List<ChatRoom> getList(String provider, String providerId) {
-        User authenticatedUser = userRepository.findByProviderAndProviderId(provider, providerId)
-            .orElseThrow(() -> new UserNotFoundException("Authenticated user not found"));
-        
-        List<ChatRoom> chatRoomList = chatRoomRepository.findByParticipantsContainingAndIsActiveTrue(authenticatedUser.getId());
+    public List<ChatRoom> getList(String userId) {
+        List<ChatRoom> chatRoomList = chatRoomRepository.findByParticipantsContainingAndIsActiveTrue(userId);
         return chatRoomList;
     }
 
-    @Transactional
-    public ChatRoom getChatRoomById(String provider, String providerId, String roomId) {
-        User authenticatedUser = userRepository.findByProviderAndProviderId(provider, providerId)
-            .orElseThrow(() -> new UserNotFoundException("Authenticated user not found"));
+    /**
+     * Returns one page of the user's rooms, most recently active first, using keyset pagination.
+     * Rooms come back as summaries with a participant count, so the page size does not depend on room sizes.
+     */
+    public ChatRoomPageResponse getRoomPage(String userId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
 
-        ChatRoom room = chatRoomRepository.findByIdAndParticipantsContaining(roomId, authenticatedUser.getId())
+        try {
+            // one extra row tells us whether another page exists without a count query
+            List<ChatRoomSummary> rooms;
+            if (cursor != null) {
+                KeysetCursor position = KeysetCursor.decode(cursor);
+                rooms = chatRoomRepository.findSummariesByParticipantBefore(userId,
+                    position.getTime(), position.getId(), pageSize + 1);
+            } else {
+                rooms = chatRoomRepository.findSummariesByParticipant(userId, pageSize + 1);
+            }
+
+            boolean hasMore = rooms.size() > pageSize;
+            if (hasMore) {
+                rooms = rooms.subList(0, pageSize);
+            }
+            return ChatRoomPageResponse.builder()
+                .rooms(rooms)
+                .nextCursor(hasMore ? KeysetCursor.of(rooms.get(rooms.size() - 1)).encode() : null)
+                .hasMore(hasMore)
+                .build();
+        } catch (DataAccessException e) {
+            throw new DatabaseOperationException("Failed to fetch chat rooms", e);
+        }
+    }
+
+    @Transactional
+    public ChatRoom getChatRoomById(String userId, String roomId) {
+        ChatRoom room = chatRoomRepository.findByIdAndParticipantsContaining(roomId, userId)
             .orElseThrow(() -> new ChatRoomNotFoundException("Can't find chat room with id: " + roomId + " or user is not a participant"));
 
         return room;
     }
 
     @Transactional
-    public ChatRoom updateChatRoomById(String provider, String providerId, String roomId, UpdateChatRoomRequest request) {
-        ChatRoom room = getChatRoomById(provider, providerId, roomId);
+    public ChatRoom updateChatRoomById(String userId, String roomId, UpdateChatRoomRequest request) {
+        ChatRoom room = getChatRoomById(userId, roomId);
 
-        User authenticatedUser = userRepository.findByProviderAndProviderId(provider, providerId)
-            .orElseThrow(() -> new UserNotFoundException("Authenticated user not found"));
-
-        if(!room.getCreatedBy().equals(authenticatedUser.getId())) {
+        if(!room.getCreatedBy().equals(userId)) {
             throw new UnauthorizedRoomActionException("Only room creator can update the room");
         }
 
@@ -269,37 +306,43 @@ public class ChatRoomService {
                 break;
         }
 
-        // Update room fields if provided in request
+        // Only the edited fields are written, so a join or leave running at the same time is not overwritten
+        Update update = new Update().set("lastActivity", LocalDateTime.now());
         if (request.getRoomName() != null && !request.getRoomName().trim().isEmpty()) {
-            room.setName(request.getRoomName().trim());
+            update.set("name", request.getRoomName().trim());
         }
         
         if (request.getDescription() != null) {
-            room.setDescription(request.getDescription().trim());
+            update.set("description", request.getDescription().trim());
         }
         
+        Criteria target = Criteria.where("_id").is(roomId);
         if (request.getMaxUsers() != null) {
-            room.setMaxParticipants(request.getMaxUsers());
+            update.set("maxParticipants", request.getMaxUsers());
+            // checked again on the document itself, since members may have joined since it was read
+            target = target.andOperator(Criteria.expr(
+                ComparisonOperators.Lte.valueOf(memberCount()).lessThanEqualToValue(request.getMaxUsers())));
         }
         
         if (request.getSettings() != null) {
-            room.setSettings(request.getSettings());
+            update.set("settings", request.getSettings());
         }
 
-        // Update the last activity timestamp
-        room.setLastActivity(LocalDateTime.now());
-
-        // Save the updated room to database
-        return chatRoomRepository.save(room);
+        ChatRoom updated = mongoTemplate.findAndModify(Query.query(target), update,
+            FindAndModifyOptions.options().returnNew(true), ChatRoom.class);
+        if (updated == null) {
+            if (request.getMaxUsers() != null && chatRoomRepository.existsById(roomId)) {
+                throw new IllegalArgumentException("Max users cannot be less than current participants");
+            }
+            throw new ChatRoomNotFoundException("Can't find chat room with id: " + roomId);
+        }
+        return updated;
     }
 
     @Transactional
-    public void leaveChatRoomById(String provider, String providerId, String roomId) {
+    public void leaveChatRoomById(String userId, String roomId) {
         try {
-            User authenticatedUser = userRepository.findByProviderAndProviderId(provider, providerId)
-                .orElseThrow(() -> new UserNotFoundException("Authenticated user not found"));
-
-            ChatRoom room = getChatRoomById(provider, providerId, roomId);
+            ChatRoom room = getChatRoomById(userId, roomId);
 
             // Prevent leaving direct message rooms
             if(room.getType() == RoomType.DIRECT_MESSAGE) {
@@ -307,28 +350,25 @@ public class ChatRoomService {
             }
 
             // Check if user is actually a participant
-            if(!room.getParticipants().contains(authenticatedUser.getId())) {
+            if(!room.getParticipants().contains(userId)) {
                 throw new UnauthorizedRoomActionException("User is not a participant of this room");
             }
 
             // Prevent room creator from leaving - they must delete the room or transfer ownership first
-            if(room.getCreatedBy().equals(authenticatedUser.getId())) {
+            if(room.getCreatedBy().equals(userId)) {
                 throw new ForbiddenActionException("Room creator cannot leave the room. Please delete the room or transfer ownership first.");
             }
 
-            // Remove user from participants set
-            Set<String> roomParticipants = room.getParticipants();
-            roomParticipants.remove(authenticatedUser.getId());
-            room.setParticipants(roomParticipants);
-            room.setLastActivity(LocalDateTime.now());
+            // Remove user from participants set with $pull, leaving members who joined meanwhile in place
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(roomId)),
+                new Update().pull("participants", userId).set("lastActivity", LocalDateTime.now()),
+                ChatRoom.class);
 
             // Delete participant record
-            participantRepository.deleteByChatRoomIdAndUserId(roomId, authenticatedUser.getId());
-
-            // Save updated room to database
-            chatRoomRepository.save(room);
+            participantRepository.deleteByChatRoomIdAndUserId(roomId, userId);
+            roomMembershipCache.removeMember(roomId, userId);
             
-            logger.info("User {} successfully left room {}", authenticatedUser.getId(), roomId);
+            logger.info("User {} successfully left room {}", userId, roomId);
             
         } catch (UserNotFoundException | ChatRoomNotFoundException | ForbiddenActionException | UnauthorizedRoomActionException e) {
             // Re-throw business logic exceptions as-is
@@ -342,6 +382,11 @@ public class ChatRoomService {
         }
     }
 
+    private static AggregationExpression memberCount() {
+        return ArrayOperators.Size.lengthOfArray(
+            ConditionalOperators.ifNull("participants").then(Collections.emptyList()));
+    }
+
     private void validateDirectMessageUpdate(UpdateChatRoomRequest request) {
         if(request.getMaxUsers() != null) {
             throw new IllegalArgumentException("Cannot change max users for direct message rooms");
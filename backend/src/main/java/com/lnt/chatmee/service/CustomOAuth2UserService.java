@@ -11,6 +11,7 @@ import org.springframework.stereotype.Service;
 
 import com.lnt.chatmee.model.User;
 import com.lnt.chatmee.repository.UserRepository;
+import com.lnt.chatmee.security.AuthenticatedUser;
 
 import lombok.RequiredArgsConstructor;
 
@@ -20,6 +21,7 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(CustomOAuth2UserService.class);
     private final UserRepository userRepository;
+    private final UserIdentityCache userIdentityCache;
 
     @Override
     public OAuth2User loadUser(OAuth2UserRequest userRequest) {
@@ -81,8 +83,15 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
 
         User savedUser = userRepository.save(user);
         logger.info("User saved successfully with ID: {}", savedUser.getId());
+
+        // Profile data may have changed at the provider; keep open WebSocket sessions in sync
+        userIdentityCache.refresh(savedUser);
         logger.info("=== End OAuth2 Login Debug Info ===");
 
-        return oAuth2User;
+        // Carry our user id on the principal so requests don't have to look the user up again
+        String nameAttributeKey = userRequest.getClientRegistration()
+                .getProviderDetails().getUserInfoEndpoint().getUserNameAttributeName();
+        return new AuthenticatedUser(oAuth2User.getAuthorities(), oAuth2User.getAttributes(),
+                nameAttributeKey, savedUser.getId());
     }
 }
@@ -0,0 +1,306 @@
+package com.lnt.chatmee.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.lnt.chatmee.dto.response.ChatMessageResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Per-room ring buffers holding the most recent messages of active rooms.
+ *
+ * A room becomes warm the first time its recent messages are loaded from MongoDB; from then on the send
+ * path appends to it and opening the room is served from memory. Rooms are evicted least recently used
+ * first once the estimated size of all buffers exceeds the configured memory budget.
+ *
+ * With the cross-node relay enabled, a buffer only sees other nodes' messages while this node is subscribed
+ * to the room's relay channel. Rooms are therefore only buffered while {@link RoomFanoutRelay} has them
+ * tracked; reads of any other room go straight to the loader.
+ */
+@Service
+public class HotRoomBuffer {
+
+    private static final Comparator<ChatMessageResponse> CHRONOLOGICAL = Comparator
+        .comparing(ChatMessageResponse::getCreatedAt)
+        .thenComparing(ChatMessageResponse::getId);
+
+    private final int capacity;
+    private final long maxBytes;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final boolean relayEnabled;
+    private final Map<String, RoomBuffer> rooms = new LinkedHashMap<>(256, 0.75f, true);
+    // rooms whose relay channel this node is subscribed to; guarded by rooms
+    private final Set<String> trackedRooms = new HashSet<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bypassed;
+    private final Counter evictions;
+
+    public HotRoomBuffer(MeterRegistry meterRegistry,
+            @Value("${app.hot-rooms.messages-per-room:50}") int capacity,
+            @Value("${app.hot-rooms.max-bytes:67108864}") long maxBytes,
+            @Value("${app.websocket.relay.enabled:true}") boolean relayEnabled) {
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.relayEnabled = relayEnabled;
+        this.hits = Counter.builder("chatmee.hot_rooms.reads").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chatmee.hot_rooms.reads").tag("result", "miss").register(meterRegistry);
+        this.bypassed = Counter.builder("chatmee.hot_rooms.reads").tag("result", "untracked").register(meterRegistry);
+        this.evictions = Counter.builder("chatmee.hot_rooms.evictions").register(meterRegistry);
+        Gauge.builder("chatmee.hot_rooms.bytes", totalBytes, AtomicLong::get)
+            .description("Estimated memory held by hot room buffers")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns the room's recent messages, newest first. On a cold room the loader is called
+     * (it must also return newest first) and its result becomes the buffer's initial content. Rooms that
+     * are not tracked are never buffered; the loader is called on every read.
+     */
+    public List<ChatMessageResponse> getRecent(String roomId, Supplier<List<ChatMessageResponse>> loader) {
+        RoomBuffer buffer;
+        synchronized (rooms) {
+            buffer = isTracked(roomId) ? rooms.computeIfAbsent(roomId, id -> new RoomBuffer()) : null;
+        }
+        if (buffer == null) {
+            bypassed.increment();
+            return loader.get();
+        }
+
+        synchronized (buffer) {
+            if (buffer.warm) {
+                hits.increment();
+                return buffer.snapshot();
+            }
+        }
+
+        misses.increment();
+        List<ChatMessageResponse> loaded = loader.get();
+        List<ChatMessageResponse> recent;
+        synchronized (buffer) {
+            if (buffer.detached) {
+                // evicted or deleted while we were loading
+                return loaded;
+            }
+            // messages sent while we were loading were already appended; merge instead of overwriting them
+            if (!buffer.warm) {
+                List<ChatMessageResponse> oldestFirst = new ArrayList<>(loaded);
+                Collections.reverse(oldestFirst);
+                for (ChatMessageResponse message : oldestFirst) {
+                    buffer.insert(message);
+                }
+                buffer.warm = true;
+            }
+            recent = buffer.snapshot();
+        }
+        enforceBudget();
+        return recent;
+    }
+
+    public boolean isWarm(String roomId) {
+        RoomBuffer buffer;
+        synchronized (rooms) {
+            buffer = rooms.get(roomId);
+        }
+        if (buffer == null) {
+            return false;
+        }
+        synchronized (buffer) {
+            return buffer.warm;
+        }
+    }
+
+    /**
+     * Adds a freshly sent message. Only rooms that are already buffered are touched.
+     */
+    public void append(String roomId, ChatMessageResponse message) {
+        RoomBuffer buffer;
+        synchronized (rooms) {
+            buffer = rooms.get(roomId);
+        }
+        if (buffer == null) {
+            return;
+        }
+        synchronized (buffer) {
+            if (buffer.detached) {
+                return;
+            }
+            buffer.insert(message);
+        }
+        enforceBudget();
+    }
+
+    /**
+     * Replaces a buffered message after an edit; a no-op if the message is not buffered.
+     */
+    public void replace(String roomId, ChatMessageResponse message) {
+        RoomBuffer buffer;
+        synchronized (rooms) {
+            buffer = rooms.get(roomId);
+        }
+        if (buffer != null) {
+            synchronized (buffer) {
+                buffer.removeById(message.getId());
+                if (!buffer.detached && !message.isDeleted()) {
+                    buffer.insert(message);
+                }
+            }
+        }
+    }
+
+    public void remove(String roomId, String messageId) {
+        RoomBuffer buffer;
+        synchronized (rooms) {
+            buffer = rooms.get(roomId);
+        }
+        if (buffer != null) {
+            synchronized (buffer) {
+                buffer.removeById(messageId);
+            }
+        }
+    }
+
+    /**
+     * Allows the room to be buffered from now on. Anything buffered before is dropped, since it may lack
+     * messages other nodes sent while the room was not tracked.
+     */
+    public void track(String roomId) {
+        synchronized (rooms) {
+            trackedRooms.add(roomId);
+        }
+        evictRoom(roomId);
+    }
+
+    /**
+     * Stops buffering the room and drops its buffer.
+     */
+    public void untrack(String roomId) {
+        synchronized (rooms) {
+            trackedRooms.remove(roomId);
+        }
+        evictRoom(roomId);
+    }
+
+    public void evictRoom(String roomId) {
+        RoomBuffer buffer;
+        synchronized (rooms) {
+            buffer = rooms.remove(roomId);
+        }
+        if (buffer != null) {
+            synchronized (buffer) {
+                buffer.clear();
+            }
+        }
+    }
+
+    // without the relay there are no other nodes to miss messages from, so every room may be buffered
+    private boolean isTracked(String roomId) {
+        return !relayEnabled || trackedRooms.contains(roomId);
+    }
+
+    private void enforceBudget() {
+        while (totalBytes.get() > maxBytes) {
+            RoomBuffer eldest;
+            synchronized (rooms) {
+                Iterator<RoomBuffer> iterator = rooms.values().iterator();
+                if (!iterator.hasNext()) {
+                    return;
+                }
+                eldest = iterator.next();
+                iterator.remove();
+            }
+            synchronized (eldest) {
+                eldest.clear();
+            }
+            evictions.increment();
+        }
+    }
+
+    private static long estimateSize(ChatMessageResponse message) {
+        // object headers and fixed fields, plus two bytes per char of every string we hold
+        long chars = length(message.getId()) + length(message.getChatRoomId()) + length(message.getSenderId())
+            + length(message.getSenderName()) + length(message.getContent())
+            + length(message.getCreatedAt()) + length(message.getUpdatedAt());
+        return 256 + 2 * chars;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private final class RoomBuffer {
+        // oldest first
+        private final Deque<ChatMessageResponse> messages = new ArrayDeque<>(capacity);
+        private long bytes;
+        private boolean warm;
+        private boolean detached;
+
+        private void insert(ChatMessageResponse message) {
+            removeById(message.getId());
+
+            if (messages.isEmpty() || CHRONOLOGICAL.compare(messages.peekLast(), message) <= 0) {
+                messages.addLast(message);
+            } else {
+                // rare out-of-order arrival (e.g. merging a load with concurrent sends)
+                List<ChatMessageResponse> sorted = new ArrayList<>(messages);
+                sorted.add(message);
+                sorted.sort(CHRONOLOGICAL);
+                messages.clear();
+                messages.addAll(sorted);
+            }
+            track(estimateSize(message));
+
+            while (messages.size() > capacity) {
+                track(-estimateSize(messages.pollFirst()));
+            }
+        }
+
+        private void removeById(String id) {
+            Iterator<ChatMessageResponse> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                ChatMessageResponse existing = iterator.next();
+                if (existing.getId().equals(id)) {
+                    iterator.remove();
+                    track(-estimateSize(existing));
+                    return;
+                }
+            }
+        }
+
+        private void clear() {
+            track(-bytes);
+            messages.clear();
+            detached = true;
+        }
+
+        private List<ChatMessageResponse> snapshot() {
+            List<ChatMessageResponse> snapshot = new ArrayList<>(messages);
+            Collections.reverse(snapshot);
+            return snapshot;
+        }
+
+        private void track(long delta) {
+            bytes += delta;
+            totalBytes.addAndGet(delta);
+        }
+    }
+}
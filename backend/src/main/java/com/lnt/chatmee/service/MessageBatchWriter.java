@@ -0,0 +1,215 @@
+package com.lnt.chatmee.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import com.lnt.chatmee.model.Message;
+import com.lnt.chatmee.repository.MessageRepository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Write-behind persister for chat messages.
+ * Messages are queued by the send path and flushed to MongoDB as unordered bulk inserts,
+ * either when a batch fills up or when the flush interval elapses, whichever comes first.
+ */
+@Service
+public class MessageBatchWriter implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageBatchWriter.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageRepository messageRepository;
+    private final MessageJournal messageJournal;
+    private final BlockingQueue<Message> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long enqueueTimeoutMs;
+
+    private final DistributionSummary flushSize;
+    private final Timer flushLatency;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public MessageBatchWriter(MongoTemplate mongoTemplate,
+            MessageRepository messageRepository,
+            MessageJournal messageJournal,
+            MeterRegistry meterRegistry,
+            @Value("${app.messages.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.messages.write-behind.batch-size:256}") int batchSize,
+            @Value("${app.messages.write-behind.flush-interval-ms:20}") long flushIntervalMs,
+            @Value("${app.messages.write-behind.enqueue-timeout-ms:50}") long enqueueTimeoutMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageRepository = messageRepository;
+        this.messageJournal = messageJournal;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+
+        this.flushSize = DistributionSummary.builder("chatmee.messages.write_behind.flush.size")
+            .description("Number of messages written per bulk insert")
+            .register(meterRegistry);
+        this.flushLatency = Timer.builder("chatmee.messages.write_behind.flush.latency")
+            .description("Time spent on a single bulk insert")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+        Gauge.builder("chatmee.messages.write_behind.queue.depth", queue, BlockingQueue::size)
+            .description("Messages waiting to be persisted")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Hands a message over to the write-behind queue.
+     * If the queue stays full for longer than the enqueue timeout the message is written
+     * directly on the caller thread, so a burst slows senders down instead of losing data.
+     */
+    public void submit(Message message) {
+        try {
+            if (queue.offer(message, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        logger.warn("Write-behind queue is full, persisting message {} synchronously", message.getId());
+        writeBatch(List.of(message));
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void runFlushLoop() {
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Message first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Keep collecting until the batch is full or the flush window closes
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Message next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                // stop() only interrupts when the graceful drain took too long; flush what is left and exit
+                drainRemaining(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Unexpected error in message flush loop", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void drainRemaining(List<Message> batch) {
+        queue.drainTo(batch);
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            writeBatch(batch.subList(from, Math.min(from + batchSize, batch.size())));
+        }
+    }
+
+    private void writeBatch(List<Message> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            mongoTemplate.bulkOps(BulkMode.UNORDERED, Message.class)
+                .insert(new ArrayList<>(batch))
+                .execute();
+            messageJournal.acknowledge(batch);
+        } catch (DataAccessException e) {
+            // An unordered bulk insert may have partially succeeded (e.g. a duplicate id after a retry).
+            // Fall back to per-document upserts so the rest of the batch is not lost.
+            // Messages that still fail stay unacknowledged in the journal and are replayed on the next start.
+            logger.warn("Bulk insert of {} messages failed, retrying one by one", batch.size(), e);
+            List<Message> saved = new ArrayList<>(batch.size());
+            for (Message message : batch) {
+                try {
+                    messageRepository.save(message);
+                    saved.add(message);
+                } catch (Exception ex) {
+                    logger.error("Failed to persist message {}", message.getId(), ex);
+                }
+            }
+            messageJournal.acknowledge(saved);
+        } finally {
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushSize.record(batch.size());
+        }
+
+        logger.debug("Flushed {} messages", batch.size());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "msg-write-behind");
+        flusher.setDaemon(false);
+        flusher.start();
+        logger.info("Message write-behind started: batchSize={}, flushIntervalMs={}", batchSize, flushIntervalMs);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            // Let the flusher drain on its own; only interrupt if it takes too long
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+            if (flusher.isAlive()) {
+                flusher.interrupt();
+                flusher.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Message write-behind stopped, {} messages left in queue", queue.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Stop after the WebSocket broker (which runs at Integer.MAX_VALUE) so late messages still get flushed
+        return Integer.MAX_VALUE - 1000;
+    }
+}
@@ -0,0 +1,430 @@
+package com.lnt.chatmee.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.model.Message;
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
+
+/**
+ * Append-only write-ahead journal for messages that have been broadcast but not yet persisted.
+ *
+ * The journal is a sequence of memory-mapped segment files. Every message is appended before it is
+ * broadcast, and acknowledged once MongoDB has confirmed the write. On startup, messages that were never
+ * acknowledged are inserted into MongoDB unless a message with the same id is already there: an ack can be
+ * lost after the write succeeded, and the stored message may have changed since. A segment file is deleted
+ * as soon as it is sealed and every message in it has been acknowledged.
+ *
+ * Record layout: [int payloadLength][int crc32][byte type][payload]. A zero length marks the end of a segment.
+ */
+@Service
+public class MessageJournal implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageJournal.class);
+
+    private static final int HEADER_SIZE = 9;
+    private static final byte TYPE_APPEND = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int REPLAY_BATCH_SIZE = 500;
+
+    /**
+     * SYNC: append returns after the record has been fsynced together with any concurrent appends (group commit).
+     * INTERVAL: records are fsynced in the background every fsync interval; append never waits.
+     * NONE: never fsync explicitly. Mapped pages still survive a JVM crash, just not an OS crash.
+     */
+    public enum FsyncPolicy {
+        SYNC,
+        INTERVAL,
+        NONE,
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+
+    private final Map<String, Segment> pendingMessages = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final Object commitLock = new Object();
+
+    private Segment currentSegment;
+    private long nextSegmentId;
+    private long writtenSeq;
+    private long committedSeq;
+    private final List<Segment> dirtySegments = new ArrayList<>();
+
+    private volatile boolean running;
+    private Thread committer;
+
+    public MessageJournal(MongoTemplate mongoTemplate,
+            ObjectMapper objectMapper,
+            @Value("${app.messages.journal.enabled:true}") boolean enabled,
+            @Value("${app.messages.journal.dir:./data/journal}") String directory,
+            @Value("${app.messages.journal.segment-size-bytes:67108864}") int segmentSize,
+            @Value("${app.messages.journal.fsync-policy:INTERVAL}") FsyncPolicy fsyncPolicy,
+            @Value("${app.messages.journal.fsync-interval-ms:5}") long fsyncIntervalMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+    }
+
+    /**
+     * Appends a message to the journal. With the SYNC policy this blocks until the record is on disk.
+     */
+    public void append(Message message) {
+        if (!enabled) {
+            return;
+        }
+
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(message);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize message " + message.getId() + " for journal", e);
+        }
+
+        long seq;
+        synchronized (writeLock) {
+            Segment segment = writeRecord(TYPE_APPEND, payload);
+            segment.outstanding.incrementAndGet();
+            pendingMessages.put(message.getId(), segment);
+            seq = ++writtenSeq;
+        }
+
+        if (fsyncPolicy == FsyncPolicy.SYNC) {
+            awaitCommit(seq);
+        }
+    }
+
+    /**
+     * Marks messages as persisted. Acks are never fsynced on their own: losing one only means the
+     * message is replayed on the next start, where the copy already in MongoDB wins.
+     */
+    public void acknowledge(Collection<Message> messages) {
+        if (!enabled || messages.isEmpty()) {
+            return;
+        }
+
+        String ids = messages.stream().map(Message::getId).collect(Collectors.joining("\n"));
+        List<Segment> released = new ArrayList<>();
+        synchronized (writeLock) {
+            writeRecord(TYPE_ACK, ids.getBytes(StandardCharsets.UTF_8));
+            for (Message message : messages) {
+                Segment segment = pendingMessages.remove(message.getId());
+                if (segment != null && segment.outstanding.decrementAndGet() == 0 && segment != currentSegment) {
+                    released.add(segment);
+                }
+            }
+        }
+
+        released.forEach(this::deleteSegment);
+    }
+
+    public int getPendingCount() {
+        return pendingMessages.size();
+    }
+
+    private Segment writeRecord(byte type, byte[] payload) {
+        int recordSize = HEADER_SIZE + payload.length;
+        // keep room for the zero-length terminator at the end of every segment
+        if (recordSize + 4 > segmentSize) {
+            throw new IllegalStateException("Journal record of " + recordSize + " bytes exceeds segment size");
+        }
+        if (currentSegment.buffer.position() + recordSize + 4 > segmentSize) {
+            rollSegment();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        MappedByteBuffer buffer = currentSegment.buffer;
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(type);
+        buffer.put(payload);
+
+        if (!currentSegment.dirty) {
+            currentSegment.dirty = true;
+            dirtySegments.add(currentSegment);
+        }
+        return currentSegment;
+    }
+
+    private void rollSegment() {
+        Segment sealed = currentSegment;
+        currentSegment = openSegment(nextSegmentId++);
+        if (sealed.outstanding.get() == 0) {
+            deleteSegment(sealed);
+        }
+    }
+
+    private void awaitCommit(long seq) {
+        synchronized (commitLock) {
+            commitLock.notifyAll();
+            while (committedSeq < seq && running) {
+                try {
+                    commitLock.wait(fsyncIntervalMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void runCommitLoop() {
+        while (running) {
+            synchronized (commitLock) {
+                try {
+                    commitLock.wait(fsyncIntervalMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            commit();
+        }
+    }
+
+    private void commit() {
+        List<Segment> toForce;
+        long seq;
+        synchronized (writeLock) {
+            if (dirtySegments.isEmpty()) {
+                return;
+            }
+            toForce = new ArrayList<>(dirtySegments);
+            toForce.forEach(segment -> segment.dirty = false);
+            dirtySegments.clear();
+            seq = writtenSeq;
+        }
+
+        // One fsync covers every append written since the previous commit
+        for (Segment segment : toForce) {
+            if (!segment.deleted) {
+                segment.buffer.force();
+            }
+        }
+
+        synchronized (commitLock) {
+            committedSeq = seq;
+            commitLock.notifyAll();
+        }
+    }
+
+    private Segment openSegment(long id) {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(path, buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open journal segment " + path, e);
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        segment.deleted = true;
+        try {
+            Files.deleteIfExists(segment.path);
+            logger.debug("Deleted fully acknowledged journal segment {}", segment.path);
+        } catch (IOException e) {
+            logger.warn("Could not delete journal segment {}", segment.path, e);
+        }
+    }
+
+    /**
+     * Reads every existing segment, inserts the messages that were never acknowledged and removes the old files.
+     */
+    private void replay() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files
+                .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        Map<String, Message> unacknowledged = new LinkedHashMap<>();
+        for (Path path : segments) {
+            readSegment(path, unacknowledged);
+            nextSegmentId = Math.max(nextSegmentId, parseSegmentId(path) + 1);
+        }
+
+        if (!unacknowledged.isEmpty()) {
+            logger.info("Replaying {} unacknowledged messages from journal", unacknowledged.size());
+            List<Message> messages = new ArrayList<>(unacknowledged.values());
+            for (int from = 0; from < messages.size(); from += REPLAY_BATCH_SIZE) {
+                insertIfAbsent(messages.subList(from, Math.min(from + REPLAY_BATCH_SIZE, messages.size())));
+            }
+        }
+
+        for (Path path : segments) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void insertIfAbsent(List<Message> messages) {
+        try {
+            mongoTemplate.bulkOps(BulkMode.UNORDERED, Message.class)
+                .insert(new ArrayList<>(messages))
+                .execute();
+        } catch (BulkOperationException e) {
+            // a duplicate id means the write reached MongoDB and only its ack was lost; keep the stored copy
+            for (BulkWriteError error : e.getErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+            logger.info("{} replayed messages were already persisted", e.getErrors().size());
+        }
+    }
+
+    private void readSegment(Path path, Map<String, Message> unacknowledged) throws IOException {
+        byte[] data = Files.readAllBytes(path);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - 5) {
+                break;
+            }
+            int checksum = buffer.getInt();
+            byte type = buffer.get();
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                // torn write from a crash; nothing after this point was acknowledged to anyone
+                logger.warn("Stopping replay of {} at corrupt record", path);
+                break;
+            }
+
+            if (type == TYPE_APPEND) {
+                Message message = objectMapper.readValue(payload, Message.class);
+                unacknowledged.put(message.getId(), message);
+            } else if (type == TYPE_ACK) {
+                for (String id : new String(payload, StandardCharsets.UTF_8).split("\n")) {
+                    unacknowledged.remove(id);
+                }
+            }
+        }
+    }
+
+    private long parseSegmentId(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            logger.info("Message journal is disabled");
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+            replay();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not replay message journal in " + directory, e);
+        }
+
+        currentSegment = openSegment(nextSegmentId++);
+        running = true;
+
+        if (fsyncPolicy != FsyncPolicy.NONE) {
+            committer = new Thread(this::runCommitLoop, "msg-journal-fsync");
+            committer.setDaemon(true);
+            committer.start();
+        }
+        logger.info("Message journal opened in {} (fsync policy {})", directory, fsyncPolicy);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (committer != null) {
+            committer.interrupt();
+        }
+        commit();
+        synchronized (writeLock) {
+            if (currentSegment.outstanding.get() == 0) {
+                deleteSegment(currentSegment);
+            }
+        }
+        logger.info("Message journal closed, {} messages still unacknowledged", pendingMessages.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Open before and close after MessageBatchWriter, which acknowledges entries while it drains
+        return Integer.MAX_VALUE - 2000;
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private boolean dirty;
+        private volatile boolean deleted;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
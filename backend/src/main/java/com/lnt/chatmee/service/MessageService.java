@@ -1,24 +1,32 @@
 package com.lnt.chatmee.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import com.lnt.chatmee.dto.MemberRoomMessages;
+import com.lnt.chatmee.dto.UserSummary;
 import com.lnt.chatmee.dto.response.ChatMessageResponse;
+import com.lnt.chatmee.dto.response.MessagePageResponse;
 import com.lnt.chatmee.exception.ChatRoomNotFoundException;
 import com.lnt.chatmee.exception.DatabaseOperationException;
 import com.lnt.chatmee.exception.ForbiddenActionException;
+import com.lnt.chatmee.exception.IllegalArgumentException;
 import com.lnt.chatmee.model.Message;
-import com.lnt.chatmee.model.User;
 import com.lnt.chatmee.repository.ChatRoomRepository;
 import com.lnt.chatmee.repository.MessageRepository;
 import com.lnt.chatmee.repository.ParticipantRepository;
-import com.lnt.chatmee.repository.UserRepository;
+import com.lnt.chatmee.util.KeysetCursor;
 
 import lombok.RequiredArgsConstructor;
 
@@ -28,37 +36,139 @@ public class MessageService {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageService.class);
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ChatRoomRepository chatRoomRepository;
-    private final ParticipantRepository participantRepository;
     private final MessageRepository messageRepository;
-    private final UserRepository userRepository;
+    private final ParticipantRepository participantRepository;
+    private final RoomMembershipCache roomMembershipCache;
+    private final UserIdentityCache userIdentityCache;
+    private final HotRoomBuffer hotRoomBuffer;
     
+    /**
+     * Returns the latest messages of a room, newest first. Active rooms are served from the hot room buffer;
+     * MongoDB is only read the first time a room is opened (or after it was evicted). With the relay enabled,
+     * only rooms that have subscribers on this node are buffered. Opening a room costs at most two round
+     * trips: when neither its members nor its messages are in memory, the access check rides on the message
+     * query, and the other one resolves the senders.
+     */
     public List<ChatMessageResponse> getRecentMessages(String roomId, String userId) {
-        if(!chatRoomRepository.existsById(roomId)) {
-            throw new ChatRoomNotFoundException("Chat room not found: " + roomId);
+        if (roomMembershipCache.isCached(roomId) || hotRoomBuffer.isWarm(roomId)) {
+            verifyAccess(roomId, userId);
+            return hotRoomBuffer.getRecent(roomId, () -> {
+                try {
+                    List<Message> messages = messageRepository.findTop50ByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc(roomId);
+                    return convertToResponses(messages);
+                } catch (DataAccessException e) {
+                    throw new DatabaseOperationException("Failed to fetch messages", e);
+                }
+            });
         }
 
-        if(!participantRepository.existsByChatRoomIdAndUserId(roomId, userId)) {
-            throw new ForbiddenActionException("You are not a participant of this room");
+        // loaded before touching the buffer, so a buffer warmed meanwhile is never served unchecked
+        List<ChatMessageResponse> recent = loadRecentAsMember(roomId, userId);
+        return hotRoomBuffer.getRecent(roomId, () -> recent);
+    }
+
+    private List<ChatMessageResponse> loadRecentAsMember(String roomId, String userId) {
+        MemberRoomMessages page;
+        try {
+            page = participantRepository.findRecentMessagesOfMember(roomId, userId).orElse(null);
+        } catch (DataAccessException e) {
+            throw new DatabaseOperationException("Failed to fetch messages", e);
+        }
+        if (page == null) {
+            throw accessDenied(roomId);
         }
+        // the next messages the user sends are checked against the member list
+        roomMembershipCache.prefetch(roomId);
+        return convertToResponses(page.getMessages());
+    }
+
+    /**
+     * Returns one page of a room's history using keyset pagination.
+     * Without a cursor the newest page is returned; "before" walks towards older messages and
+     * "after" towards newer ones. Messages in the page are always ordered newest first.
+     */
+    public MessagePageResponse getMessageHistory(String roomId, String userId, String before, String after, int limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Only one of 'before' and 'after' can be given");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // one extra row tells us whether another page exists without a count query
+        Pageable fetch = PageRequest.of(0, pageSize + 1);
+
+        verifyAccess(roomId, userId);
 
         try {
-            List<Message> messages = messageRepository.findTop50ByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc(roomId);
-            return messages.stream().map(this::convertToResponse).collect((Collectors.toList()));
+            List<Message> messages;
+            if (after != null) {
+                KeysetCursor cursor = KeysetCursor.decode(after);
+                messages = new ArrayList<>(messageRepository.findPageAfter(roomId, cursor.getTime(), cursor.getId(), fetch));
+            } else if (before != null) {
+                KeysetCursor cursor = KeysetCursor.decode(before);
+                messages = new ArrayList<>(messageRepository.findPageBefore(roomId, cursor.getTime(), cursor.getId(), fetch));
+            } else {
+                messages = new ArrayList<>(messageRepository.findByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDescIdDesc(roomId, fetch));
+            }
+
+            boolean hasMore = messages.size() > pageSize;
+            if (hasMore) {
+                messages = messages.subList(0, pageSize);
+            }
+            if (after != null) {
+                // fetched oldest first so the page sits right after the cursor
+                Collections.reverse(messages);
+            }
+
+            boolean hasOlder = after != null || hasMore;
+            return MessagePageResponse.builder()
+                .messages(convertToResponses(messages))
+                .olderCursor(hasOlder && !messages.isEmpty() ? KeysetCursor.of(messages.get(messages.size() - 1)).encode() : null)
+                .newerCursor(!messages.isEmpty() ? KeysetCursor.of(messages.get(0)).encode() : after)
+                .hasMore(hasMore)
+                .build();
         } catch (DataAccessException e) {
             throw new DatabaseOperationException("Failed to fetch messages", e);
         }
     }
 
-    private ChatMessageResponse convertToResponse(Message message) {
-        // Get sender name
-        String senderName = userRepository.findById(message.getSenderId())
-            .map(User::getName)
-            .orElse("Unknown User");
-            
+    private void verifyAccess(String roomId, String userId) {
+        // Participants are removed together with their room, so a member implies the room exists.
+        // The room lookup is only needed to tell "not found" from "forbidden" on the failure path.
+        if (roomMembershipCache.isMember(roomId, userId)) {
+            return;
+        }
+        throw accessDenied(roomId);
+    }
+
+    private RuntimeException accessDenied(String roomId) {
+        if(!chatRoomRepository.existsById(roomId)) {
+            return new ChatRoomNotFoundException("Chat room not found: " + roomId);
+        }
+        return new ForbiddenActionException("You are not a participant of this room");
+    }
+
+    /**
+     * Converts a page of messages, resolving all senders with at most one batched user query.
+     */
+    private List<ChatMessageResponse> convertToResponses(List<Message> messages) {
+        Set<String> senderIds = messages.stream().map(Message::getSenderId).collect(Collectors.toSet());
+        Map<String, UserSummary> senders = userIdentityCache.resolveAll(senderIds);
+
+        return messages.stream()
+            .map(message -> {
+                UserSummary sender = senders.get(message.getSenderId());
+                return convertToResponse(message, sender != null ? sender.getName() : "Unknown User");
+            })
+            .collect(Collectors.toList());
+    }
+
+    private ChatMessageResponse convertToResponse(Message message, String senderName) {
         return ChatMessageResponse.builder()
             .id(message.getId())
             .chatRoomId(message.getChatRoomId())
+            .seq(message.getSeq())
             .senderId(message.getSenderId())
             .senderName(senderName)
             .content(message.getContent())
@@ -69,21 +179,4 @@ public class MessageService {
             .isDeleted(message.isDeleted())
             .build();
     }
-
-    /**
-     * Asynchronously persist a message to the database.
-     * This method runs on a separate thread pool to avoid blocking the WebSocket message broker.
-     */
-    @Async("messageIOExecutor")
-    public void persistMessageAsync(Message message) {
-        logger.info("🟢 ASYNC PERSIST START: messageId={}, thread={}", 
-            message.getId(), Thread.currentThread().getName());
-        try {
-            messageRepository.save(message);
-            logger.info("✅ ASYNC PERSIST SUCCESS: messageId={}", message.getId());
-        } catch (Exception e) {
-            logger.error("❌ ASYNC PERSIST FAILED: messageId={}", message.getId(), e);
-            // You could add retry logic or dead-letter queue here if needed
-        }
-    }
 }
@@ -1,26 +1,37 @@
 package com.lnt.chatmee.service;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.lnt.chatmee.exception.ChatRoomNotFoundException;
 import com.lnt.chatmee.exception.DatabaseOperationException;
 import com.lnt.chatmee.exception.RoomCapacityExceededException;
 import com.lnt.chatmee.exception.UserAlreadyInRoomException;
 import com.lnt.chatmee.exception.UserNotFoundException;
 import com.lnt.chatmee.model.ChatRoom;
 import com.lnt.chatmee.model.Participant;
-import com.lnt.chatmee.model.User;
 import com.lnt.chatmee.model.Participant.Role;
 import com.lnt.chatmee.repository.ChatRoomRepository;
 import com.lnt.chatmee.repository.ParticipantRepository;
 import com.lnt.chatmee.repository.UserRepository;
 import com.lnt.chatmee.util.ValidationUtil;
 
+import com.mongodb.client.result.UpdateResult;
+
 import lombok.RequiredArgsConstructor;
 
 @Service
@@ -32,6 +43,8 @@ public class ParticipantService {
     private final ParticipantRepository participantRepository;
     private final UserRepository userRepository;
     private final ChatRoomRepository chatRoomRepository;
+    private final RoomMembershipCache roomMembershipCache;
+    private final MongoTemplate mongoTemplate;
 
     public void createParticipant(String chatRoomId, String userId, Role role) {
         try {
@@ -55,6 +68,7 @@ public class ParticipantService {
                 .build();
             
             participantRepository.save(participant);
+            roomMembershipCache.addMember(chatRoomId, userId);
             logger.info("Created participant: {} for room: {} with role: {}", userId, chatRoomId, role);
             
         } catch (IllegalArgumentException e) {
@@ -66,17 +80,17 @@ public class ParticipantService {
     }
     
     @Transactional
-    public void joinRoom(String roomId, String provider, String providerId) {
+    public void joinRoom(String roomId, String userId) {
         try {
-            // Get the authenticated user
-            User user = userRepository.findByProviderAndProviderId(provider, providerId)
-                .orElseThrow(() -> new UserNotFoundException("Authenticated user not found"));
-            
-            // Add user as MEMBER to the room
-            addParticipant(roomId, user.getId(), Role.MEMBER);
+            // Add the authenticated user as MEMBER to the room
+            ValidationUtil.validateId(roomId, "Room ID");
+            join(roomId, userId, Role.MEMBER);
+            logger.info("User {} joined room {}", userId, roomId);
             
+        } catch (ChatRoomNotFoundException | UserAlreadyInRoomException | RoomCapacityExceededException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Failed to join room {} for user {}/{}", roomId, provider, providerId, e);
+            logger.error("Failed to join room {} for user {}", roomId, userId, e);
             throw new DatabaseOperationException("Failed to join room", e);
         }
     }
@@ -87,34 +101,16 @@ public class ParticipantService {
             // Validate IDs
             ValidationUtil.validateId(roomId, "Room ID");
             ValidationUtil.validateId(userId, "User ID");
-            
-            ChatRoom room = chatRoomRepository.findById(roomId)
-                .orElseThrow(() -> new RuntimeException("Can't find chat room with id: " + roomId));
 
-            if(userRepository.findById(userId).isEmpty()) {
+            // the id comes from the request body, not from the session, so it has to be checked
+            if(!userRepository.existsById(userId)) {
                 throw new UserNotFoundException("Participant not found");
             }
 
-            if(participantRepository.existsByChatRoomIdAndUserId(roomId, userId)) {
-                throw new UserAlreadyInRoomException("User is already in the room");
-            }
-
-            if(room.getMaxParticipants() > 0) {
-                Long currentCount = participantRepository.countByChatRoomId(roomId);
-                if(currentCount >= room.getMaxParticipants()) {
-                    throw new RoomCapacityExceededException("Room has reached maximum capacity");
-                }
-            }
-
-            createParticipant(roomId, userId, role);
+            join(roomId, userId, role);
             logger.info("Added participant {} to room {}", userId, roomId);
             
-            // Update room's participants set and last activity
-            room.getParticipants().add(userId);
-            room.setLastActivity(LocalDateTime.now());
-            chatRoomRepository.save(room);
-            
-        } catch (UserAlreadyInRoomException | RoomCapacityExceededException e) {
+        } catch (UserNotFoundException | ChatRoomNotFoundException | UserAlreadyInRoomException | RoomCapacityExceededException e) {
             throw e;
         } catch (Exception e) {
             logger.error("Unexpected error while adding participant", e);
@@ -122,7 +118,68 @@ public class ParticipantService {
         }
     }
 
+    /**
+     * Puts the user into the room with two writes. The first is a conditional update of the room that only
+     * matches while the user is not a member and a seat is free, so the capacity check and the $addToSet
+     * happen atomically on one document and concurrent joins can never overfill the room. The second upserts
+     * the participant record. The room is only read back when the update matched nothing, to tell why.
+     */
+    void join(String roomId, String userId, Role role) {
+        UpdateResult seat = mongoTemplate.updateFirst(Query.query(seatFor(roomId, userId)),
+            new Update().addToSet("participants", userId).set("lastActivity", LocalDateTime.now()),
+            ChatRoom.class);
+        if (seat.getMatchedCount() == 0) {
+            throw joinRefused(roomId, userId);
+        }
+
+        try {
+            upsertParticipant(roomId, userId, role);
+        } catch (RuntimeException e) {
+            // give the seat back, otherwise the room counts a member that has no participant record
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(roomId)),
+                new Update().pull("participants", userId), ChatRoom.class);
+            throw e;
+        }
+        roomMembershipCache.addMember(roomId, userId);
+    }
+
+    private static Criteria seatFor(String roomId, String userId) {
+        AggregationExpression memberCount = ArrayOperators.Size.lengthOfArray(
+            ConditionalOperators.ifNull("participants").then(Collections.emptyList()));
+        return Criteria.where("_id").is(roomId)
+            .and("participants").ne(userId)
+            .orOperator(
+                Criteria.where("maxParticipants").lte(0),
+                Criteria.expr(ComparisonOperators.Lt.valueOf(memberCount).lessThan("maxParticipants")));
+    }
+
+    private RuntimeException joinRefused(String roomId, String userId) {
+        ChatRoom room = chatRoomRepository.findById(roomId).orElse(null);
+        if (room == null) {
+            return new ChatRoomNotFoundException("Can't find chat room with id: " + roomId);
+        }
+        if (room.getParticipants() != null && room.getParticipants().contains(userId)) {
+            return new UserAlreadyInRoomException("User is already in the room");
+        }
+        return new RoomCapacityExceededException("Room has reached maximum capacity");
+    }
+
+    private void upsertParticipant(String roomId, String userId, Role role) {
+        LocalDateTime now = LocalDateTime.now();
+        // a record left behind by an earlier, half-finished join is kept as it is
+        Update insert = new Update()
+            .setOnInsert("_id", UUID.randomUUID().toString())
+            .setOnInsert("role", role)
+            .setOnInsert("joinedAt", now)
+            .setOnInsert("lastSeenAt", now)
+            .setOnInsert("isMuted", false)
+            .setOnInsert("isBlocked", false)
+            .setOnInsert("updatedAt", now);
+        mongoTemplate.upsert(Query.query(Criteria.where("chatRoomId").is(roomId).and("userId").is(userId)),
+            insert, Participant.class);
+    }
+
     public boolean isUserParticipant(String roomId, String userId) {
-        return participantRepository.findByChatRoomIdAndUserId(roomId, userId).isPresent();
+        return roomMembershipCache.isMember(roomId, userId);
     }
 }
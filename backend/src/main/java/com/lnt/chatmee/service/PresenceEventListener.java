@@ -1,39 +1,38 @@
 package com.lnt.chatmee.service;
 
+import java.util.Map;
+
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
-import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
-import java.util.Objects;
+import com.lnt.chatmee.security.SessionIdentityInterceptor;
 
 @Component
 public class PresenceEventListener {
 
-    private final RedisPresencePublisher presencePublisher;
+    private final PresenseService presenseService;
 
-    public PresenceEventListener(RedisPresencePublisher presencePublisher) {
-        this.presencePublisher = presencePublisher;
+    public PresenceEventListener(PresenseService presenseService) {
+        this.presenseService = presenseService;
     }
 
     @EventListener
-    public void handleWebSocketConnectListener(SessionConnectedEvent event) {
+    public void handleWebSocketConnectListener(SessionConnectEvent event) {
         StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
-        // In a real app, you'd get the user ID from the security context
-        // For this example, we'll extract it from a header if present
-        String userId = Objects.requireNonNull(headers.getFirstNativeHeader("userId"));
-        if (userId != null) {
-            presencePublisher.publishPresenceUpdate(userId, true);
+        // bound from the handshake principal by SessionIdentityInterceptor before this event is published
+        Map<String, Object> sessionAttributes = headers.getSessionAttributes();
+        Object userId = sessionAttributes != null ? sessionAttributes.get(SessionIdentityInterceptor.SESSION_USER_ID) : null;
+        if (userId != null && headers.getSessionId() != null) {
+            presenseService.sessionConnected(headers.getSessionId(), userId.toString());
         }
     }
 
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
-        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
-        String userId = Objects.requireNonNull(headers.getFirstNativeHeader("userId"));
-        if (userId != null) {
-            presencePublisher.publishPresenceUpdate(userId, false);
-        }
+        // the user goes offline only once their last session is gone, on any node
+        presenseService.sessionDisconnected(event.getSessionId());
     }
-}
\ No newline at end of file
+}
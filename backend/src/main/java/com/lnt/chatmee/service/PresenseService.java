@@ -1,22 +1,150 @@
 package com.lnt.chatmee.service;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Service;
 
+/**
+ * Presence of users across all nodes.
+ *
+ * The source of truth lives in Redis (see {@link RedisPresencePublisher}); this node registers its own
+ * WebSocket sessions there and keeps their heartbeats alive. Reads are answered from a local near-cache of
+ * the online users, updated from the presence change stream and re-synced from Redis now and then in case a
+ * change was missed. Every node also sweeps sessions whose heartbeat ran out, so users of a crashed node
+ * go offline within one session TTL.
+ *
+ * Connects and disconnects are written to Redis in batches every flush interval rather than one by one,
+ * so a wave of reconnects after a deploy costs a few scripts and change messages instead of one per session.
+ * Pending operations cancel each other out, e.g. a session that connects and disconnects within the same
+ * window never reaches Redis.
+ */
 @Service
-public class PresenseService {
-    
-    private final Set<String> onlineUsers = ConcurrentHashMap.newKeySet();
+public class PresenseService implements SmartLifecycle {
 
-    public void userConnected(String userId) {
-        onlineUsers.add(userId);
+    private static final Logger logger = LoggerFactory.getLogger(PresenseService.class);
+
+    private final RedisPresencePublisher presenceStore;
+    private final long sessionTtlMs;
+    private final long heartbeatIntervalMs;
+    private final long resyncIntervalMs;
+    private final long flushIntervalMs;
+
+    private volatile Set<String> onlineUsers = ConcurrentHashMap.newKeySet();
+    // sessions connected to this node, sessionId -> userId
+    private final Map<String, String> localSessions = new ConcurrentHashMap<>();
+
+    // writes waiting for the next flush, guarded by pendingLock
+    private final Object pendingLock = new Object();
+    private Map<String, String> pendingConnects = new HashMap<>();
+    private Set<String> pendingDisconnects = new HashSet<>();
+    private Set<String> pendingUserRemovals = new HashSet<>();
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    public PresenseService(RedisPresencePublisher presenceStore,
+            @Value("${app.presence.session-ttl-ms:45000}") long sessionTtlMs,
+            @Value("${app.presence.heartbeat-interval-ms:15000}") long heartbeatIntervalMs,
+            @Value("${app.presence.resync-interval-ms:60000}") long resyncIntervalMs,
+            @Value("${app.presence.flush-interval-ms:250}") long flushIntervalMs) {
+        this.presenceStore = presenceStore;
+        this.sessionTtlMs = sessionTtlMs;
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        this.resyncIntervalMs = resyncIntervalMs;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * Registers a session of the user; calling it again for the same session only refreshes its heartbeat.
+     */
+    public void sessionConnected(String sessionId, String userId) {
+        localSessions.put(sessionId, userId);
+        synchronized (pendingLock) {
+            pendingDisconnects.remove(sessionId);
+            pendingConnects.put(sessionId, userId);
+        }
     }
 
+    public void sessionDisconnected(String sessionId) {
+        if (localSessions.remove(sessionId) != null) {
+            synchronized (pendingLock) {
+                pendingConnects.remove(sessionId);
+                pendingDisconnects.add(sessionId);
+            }
+        }
+    }
+
+    /**
+     * Takes the user offline on every device and every node, e.g. on an explicit sign-off.
+     *
+     * The sessions on this node are dropped right away. The sign-off reaches the other nodes through
+     * {@link RedisPresencePublisher#SIGN_OFF_CHANNEL} once it is flushed, and they drop theirs in
+     * {@link #dropLocalSessions(String)} so their heartbeats do not bring the user back.
+     */
     public void userDisconnected(String userId) {
-        onlineUsers.remove(userId);
+        localSessions.values().removeIf(userId::equals);
+        synchronized (pendingLock) {
+            pendingConnects.values().removeIf(userId::equals);
+            pendingUserRemovals.add(userId);
+        }
+    }
+
+    /**
+     * Forgets this node's sessions of a user who signed off, possibly through another node. Their removal
+     * is queued as well, in case a heartbeat re-registered one of them before the sign-off arrived.
+     */
+    public void dropLocalSessions(String userId) {
+        localSessions.forEach((sessionId, sessionUserId) -> {
+            if (userId.equals(sessionUserId)) {
+                sessionDisconnected(sessionId);
+            }
+        });
+    }
+
+    void flush() {
+        Map<String, String> connects;
+        Set<String> disconnects;
+        Set<String> userRemovals;
+        synchronized (pendingLock) {
+            if (pendingConnects.isEmpty() && pendingDisconnects.isEmpty() && pendingUserRemovals.isEmpty()) {
+                return;
+            }
+            connects = pendingConnects;
+            disconnects = pendingDisconnects;
+            userRemovals = pendingUserRemovals;
+            pendingConnects = new HashMap<>();
+            pendingDisconnects = new HashSet<>();
+            pendingUserRemovals = new HashSet<>();
+        }
+
+        // removals first: a connect queued after a sign-off of the same user has to win
+        presenceStore.removeUsers(userRemovals);
+        presenceStore.removeSessions(disconnects);
+        presenceStore.touchSessions(connects, System.currentTimeMillis() + sessionTtlMs);
+    }
+
+    /**
+     * Applies an entry of the presence change stream to the near-cache.
+     */
+    public void applyChange(String userId, boolean online) {
+        if (online) {
+            onlineUsers.add(userId);
+        } else {
+            onlineUsers.remove(userId);
+        }
     }
 
     public Set<String> getOnlineUsers() {
@@ -26,4 +154,65 @@ public class PresenseService {
     public boolean isUserOnline(String userId) {
         return onlineUsers.contains(userId);
     }
+
+    private void heartbeat() {
+        if (!localSessions.isEmpty()) {
+            presenceStore.touchSessions(new HashMap<>(localSessions), System.currentTimeMillis() + sessionTtlMs);
+        }
+        long offline = presenceStore.sweepExpired(System.currentTimeMillis());
+        if (offline > 0) {
+            logger.info("Presence sweep took {} users with expired sessions offline", offline);
+        }
+    }
+
+    private void resync() {
+        Set<String> snapshot = ConcurrentHashMap.newKeySet();
+        Set<String> members = presenceStore.onlineUsers();
+        if (members != null) {
+            snapshot.addAll(members);
+        }
+        onlineUsers = snapshot;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "presence-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> runSafely("flush", this::flush),
+            flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> runSafely("heartbeat", this::heartbeat),
+            heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> runSafely("resync", this::resync),
+            0, resyncIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        try {
+            flush();
+            // a clean shutdown takes our users offline right away instead of after the TTL
+            presenceStore.removeSessions(List.copyOf(localSessions.keySet()));
+        } catch (Exception e) {
+            logger.warn("Could not remove local sessions from presence on shutdown", e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static void runSafely(String task, Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (Exception e) {
+            logger.error("Presence {} failed", task, e);
+        }
+    }
 }
@@ -0,0 +1,25 @@
+package com.lnt.chatmee.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of a rate limit check. Limit, remaining and reset describe the tightest of the tier's limits,
+ * which is what clients need to pace themselves.
+ */
+@Getter
+@AllArgsConstructor
+public class RateLimitDecision {
+
+    private final boolean allowed;
+    private final long limit;
+    private final long remaining;
+    // time until the tightest bucket is full again
+    private final long resetMillis;
+    // time until the next request would be allowed, zero when this one was
+    private final long retryAfterMillis;
+
+    public static RateLimitDecision unlimited() {
+        return new RateLimitDecision(true, 0, 0, 0, 0);
+    }
+}
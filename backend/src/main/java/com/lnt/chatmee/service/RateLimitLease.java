@@ -0,0 +1,21 @@
+package com.lnt.chatmee.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Tokens handed out by {@link RedisRateLimiter}. Limit, remaining and reset describe the tightest of the
+ * tier's limits right after the lease, which is what clients need to pace themselves.
+ */
+@Getter
+@AllArgsConstructor
+public class RateLimitLease {
+
+    private final long granted;
+    private final long limit;
+    private final long remaining;
+    // time until the tightest bucket is full again
+    private final long resetMillis;
+    // time until a token is available again, zero unless this lease left a bucket dry
+    private final long retryAfterMillis;
+}
@@ -0,0 +1,9 @@
+package com.lnt.chatmee.service;
+
+/**
+ * Groups of clients that share the same rate limits.
+ */
+public enum RateLimitTier {
+    PUBLIC,
+    AUTHENTICATED
+}
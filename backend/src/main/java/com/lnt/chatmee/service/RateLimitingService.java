@@ -1,32 +1,163 @@
 package com.lnt.chatmee.service;
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 
+/**
+ * Rate limiting with a local token bucket in front of {@link RedisRateLimiter}.
+ *
+ * Each client gets a small lease of tokens from Redis and spends it locally with a CAS loop, so only one
+ * request per lease pays a Redis round trip. Leases expire after a short time and their unused tokens are
+ * handed back with the next lease, so quota does not leak to idle nodes. A refusal, or a lease that left a
+ * bucket dry, is remembered locally until Redis says a token is due again, so clients hammering a limit do
+ * not hammer Redis as well.
+ * Every token is charged in Redis before it is spent, so the limits hold across the cluster; the price is
+ * that a client may use a lease a little later than it was taken, allowing bursts of up to one extra lease.
+ */
 @Service
-@RequiredArgsConstructor
 public class RateLimitingService {
 
-    private final StringRedisTemplate redisTemplate;
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitingService.class);
+
+    private final RedisRateLimiter redisRateLimiter;
+    private final int leaseSize;
+    private final long leaseTtlNanos;
+    private final int maxLocalClients;
+    private final LongSupplier clock;
+
+    private final Map<String, LocalBucket> buckets = new ConcurrentHashMap<>();
+    private volatile long nextPruneAt;
+
+    private final Counter localDecisions;
+    private final Counter redisDecisions;
+
+    @Autowired
+    public RateLimitingService(RedisRateLimiter redisRateLimiter,
+            MeterRegistry meterRegistry,
+            @Value("${app.rate-limit.lease.size:10}") int leaseSize,
+            @Value("${app.rate-limit.lease.ttl-ms:10000}") long leaseTtlMs,
+            @Value("${app.rate-limit.lease.max-clients:100000}") int maxLocalClients) {
+        this(redisRateLimiter, meterRegistry, leaseSize, leaseTtlMs, maxLocalClients, System::nanoTime);
+    }
+
+    RateLimitingService(RedisRateLimiter redisRateLimiter, MeterRegistry meterRegistry,
+            int leaseSize, long leaseTtlMs, int maxLocalClients, LongSupplier clock) {
+        this.redisRateLimiter = redisRateLimiter;
+        this.leaseSize = leaseSize;
+        this.leaseTtlNanos = TimeUnit.MILLISECONDS.toNanos(leaseTtlMs);
+        this.maxLocalClients = maxLocalClients;
+        this.clock = clock;
+        this.localDecisions = Counter.builder("chatmee.rate_limit.decisions").tag("source", "local").register(meterRegistry);
+        this.redisDecisions = Counter.builder("chatmee.rate_limit.decisions").tag("source", "redis").register(meterRegistry);
+    }
+
+    public RateLimitDecision check(String key, RateLimitTier tier) {
+        String bucketKey = tier.name() + ':' + key;
+        long now = clock.getAsLong();
+        LocalBucket bucket = buckets.get(bucketKey);
+        if (bucket != null) {
+            if (bucket.tryTake(now)) {
+                localDecisions.increment();
+                return bucket.decision(true, now);
+            }
+            if (now - bucket.deniedUntil < 0) {
+                localDecisions.increment();
+                return bucket.decision(false, now);
+            }
+        }
+        return leaseAndTake(bucketKey, key, tier, now, bucket);
+    }
+
+    private RateLimitDecision leaseAndTake(String bucketKey, String key, RateLimitTier tier, long now, LocalBucket previous) {
+        // leftovers of an expired lease go back to Redis with the new one
+        long refund = previous != null && previous.isExpired(now) ? previous.tokens.getAndSet(0) : 0;
+        RateLimitLease lease;
+        try {
+            lease = redisRateLimiter.lease(key, tier, Math.min(leaseSize, redisRateLimiter.maxLease(tier)), refund);
+        } catch (Exception e) {
+            // an outage of the limiter should not take the API down with it
+            logger.warn("Rate limit check failed for {}, letting the request through", key, e);
+            return RateLimitDecision.unlimited();
+        }
+        redisDecisions.increment();
+
+        boolean allowed = lease.getGranted() > 0;
+        LocalBucket fresh = new LocalBucket(Math.max(0, lease.getGranted() - 1),
+            now + leaseTtlNanos,
+            // once the leased tokens are spent, asking again before the next refill is pointless
+            now + TimeUnit.MILLISECONDS.toNanos(lease.getRetryAfterMillis()),
+            lease.getLimit(),
+            lease.getRemaining(),
+            now + TimeUnit.MILLISECONDS.toNanos(lease.getResetMillis()));
+        // a concurrent lease for the same client may have landed first; keep its tokens instead of leaking them
+        LocalBucket current = buckets.merge(bucketKey, fresh, (old, next) -> {
+            next.tokens.addAndGet(old.tokens.getAndSet(0));
+            return next;
+        });
+        pruneIfNeeded(now);
+        return current.decision(allowed, now);
+    }
+
+    private void pruneIfNeeded(long now) {
+        if (buckets.size() <= maxLocalClients || now - nextPruneAt < 0) {
+            return;
+        }
+        nextPruneAt = now + leaseTtlNanos;
+        buckets.values().removeIf(bucket -> bucket.isExpired(now) && now - bucket.deniedUntil >= 0);
+    }
+
+    private static final class LocalBucket {
+        private final AtomicLong tokens;
+        private final long expiresAt;
+        private final long deniedUntil;
+        private final long limit;
+        private final long remainingInRedis;
+        private final long resetAt;
 
-    private static final int MAX_REQUESTS_PER_MINUTE_PUBLIC = 20;
-    private static final int MAX_REQUESTS_PER_MINUTE_AUTHENTICATED = 100;
+        private LocalBucket(long tokens, long expiresAt, long deniedUntil, long limit, long remainingInRedis, long resetAt) {
+            this.tokens = new AtomicLong(tokens);
+            this.expiresAt = expiresAt;
+            this.deniedUntil = deniedUntil;
+            this.limit = limit;
+            this.remainingInRedis = remainingInRedis;
+            this.resetAt = resetAt;
+        }
 
-    public boolean isAllowed(String key, boolean isAuthenticated) {
-        int maxRequests = isAuthenticated ? MAX_REQUESTS_PER_MINUTE_AUTHENTICATED : MAX_REQUESTS_PER_MINUTE_PUBLIC;
-        String redisKey = "rate_limit:" + key + ":" + Instant.now().getEpochSecond() / 60;
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
 
-        Long count = redisTemplate.opsForValue().increment(redisKey);
-        
-        if (count != null && count == 1) {
-            redisTemplate.expire(redisKey, 1, TimeUnit.MINUTES);
+        private boolean tryTake(long now) {
+            if (isExpired(now)) {
+                return false;
+            }
+            while (true) {
+                long available = tokens.get();
+                if (available <= 0) {
+                    return false;
+                }
+                if (tokens.compareAndSet(available, available - 1)) {
+                    return true;
+                }
+            }
         }
 
-        return count != null && count <= maxRequests;
+        private RateLimitDecision decision(boolean allowed, long now) {
+            long retryAfter = allowed ? 0 : TimeUnit.NANOSECONDS.toMillis(Math.max(0, deniedUntil - now));
+            return new RateLimitDecision(allowed, limit, remainingInRedis + Math.max(0, tokens.get()),
+                TimeUnit.NANOSECONDS.toMillis(Math.max(0, resetAt - now)), retryAfter);
+        }
     }
 }
@@ -0,0 +1,38 @@
+package com.lnt.chatmee.service;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.dto.MembershipChange;
+
+@Service
+public class RedisMembershipSubscriber implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisMembershipSubscriber.class);
+
+    private final ObjectMapper objectMapper;
+    private final RoomMembershipCache roomMembershipCache;
+
+    public RedisMembershipSubscriber(ObjectMapper objectMapper, RoomMembershipCache roomMembershipCache) {
+        this.objectMapper = objectMapper;
+        this.roomMembershipCache = roomMembershipCache;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            MembershipChange change = objectMapper.readValue(message.getBody(), MembershipChange.class);
+            roomMembershipCache.onRemoteChange(change);
+        } catch (IOException e) {
+            logger.error("Failed to parse membership change from Redis message", e);
+        } catch (Exception e) {
+            logger.error("Unexpected error handling Redis membership message", e);
+        }
+    }
+}
@@ -1,32 +1,162 @@
 package com.lnt.chatmee.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-
+/**
+ * Cluster-wide presence state in Redis.
+ *
+ * Every WebSocket session is a member of a sorted set scored by the time its heartbeat expires, and every
+ * user has a set of their live sessions, so a user with several devices stays online until the last one
+ * is gone. All updates run as Lua scripts that publish on {@link #PRESENCE_CHANNEL} only when a user
+ * actually goes online or offline, which makes the channel the single change stream for presence.
+ * A script publishes all the transitions it caused as one JSON array of {userId, online} entries, so a
+ * batch of sessions costs one message however many users it flips. Signing users off additionally
+ * publishes their ids on {@link #SIGN_OFF_CHANNEL}, so every node drops its own sessions of those users.
+ */
 @Service
 public class RedisPresencePublisher {
 
-    private static final String PRESENCE_CHANNEL = "presence-channel";
+    public static final String PRESENCE_CHANNEL = "presence-channel";
+    public static final String SIGN_OFF_CHANNEL = "presence-sign-off";
+
+    // one hash tag so all keys live in the same cluster slot and can be used by one script
+    private static final String SESSIONS_KEY = "{presence}:sessions";
+    private static final String SESSION_USERS_KEY = "{presence}:session-users";
+    private static final String ONLINE_USERS_KEY = "{presence}:online";
+    private static final String USER_SESSIONS_PREFIX = "{presence}:user:";
+
+    private static final int SWEEP_BATCH = 500;
+
+    private static final String PUBLISH_CHANGES =
+        "if #changes > 0 then redis.call('PUBLISH', ARGV[2], cjson.encode(changes)) end\n"
+        + "return #changes";
+
+    // KEYS: sessions, session-users, online   ARGV: user prefix, channel, expiresAt, then sessionId/userId pairs
+    private static final RedisScript<Long> TOUCH_SESSIONS = new DefaultRedisScript<>(
+        "local changes = {}\n"
+        + "for i = 4, #ARGV, 2 do\n"
+        + "  local sid, uid = ARGV[i], ARGV[i + 1]\n"
+        + "  redis.call('ZADD', KEYS[1], ARGV[3], sid)\n"
+        + "  redis.call('HSET', KEYS[2], sid, uid)\n"
+        + "  redis.call('SADD', ARGV[1] .. uid, sid)\n"
+        + "  if redis.call('SADD', KEYS[3], uid) == 1 then\n"
+        + "    changes[#changes + 1] = {userId = uid, online = true}\n"
+        + "  end\n"
+        + "end\n"
+        + PUBLISH_CHANGES, Long.class);
+
+    private static final String REMOVE_SESSION_FUNCTION =
+        "local changes = {}\n"
+        + "local function remove_session(sid)\n"
+        + "  local uid = redis.call('HGET', KEYS[2], sid)\n"
+        + "  if not uid then return end\n"
+        + "  redis.call('HDEL', KEYS[2], sid)\n"
+        + "  redis.call('ZREM', KEYS[1], sid)\n"
+        + "  local userKey = ARGV[1] .. uid\n"
+        + "  redis.call('SREM', userKey, sid)\n"
+        + "  if redis.call('SCARD', userKey) == 0 and redis.call('SREM', KEYS[3], uid) == 1 then\n"
+        + "    changes[#changes + 1] = {userId = uid, online = false}\n"
+        + "  end\n"
+        + "end\n";
+
+    // ARGV: user prefix, channel, then session ids
+    private static final RedisScript<Long> REMOVE_SESSIONS = new DefaultRedisScript<>(
+        REMOVE_SESSION_FUNCTION
+        + "for i = 3, #ARGV do remove_session(ARGV[i]) end\n"
+        + PUBLISH_CHANGES, Long.class);
+
+    // ARGV: user prefix, channel, sign-off channel, then user ids
+    private static final RedisScript<Long> REMOVE_USERS = new DefaultRedisScript<>(
+        REMOVE_SESSION_FUNCTION
+        + "local signedOff = {}\n"
+        + "for i = 4, #ARGV do\n"
+        + "  for _, sid in ipairs(redis.call('SMEMBERS', ARGV[1] .. ARGV[i])) do remove_session(sid) end\n"
+        + "  signedOff[#signedOff + 1] = ARGV[i]\n"
+        + "end\n"
+        + "redis.call('PUBLISH', ARGV[3], cjson.encode(signedOff))\n"
+        + PUBLISH_CHANGES, Long.class);
+
+    // ARGV: user prefix, channel, now, batch size
+    private static final RedisScript<Long> SWEEP_EXPIRED = new DefaultRedisScript<>(
+        REMOVE_SESSION_FUNCTION
+        + "for _, sid in ipairs(redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[3], 'LIMIT', 0, ARGV[4])) do\n"
+        + "  remove_session(sid)\n"
+        + "end\n"
+        + PUBLISH_CHANGES, Long.class);
+
+    private static final List<String> KEYS = List.of(SESSIONS_KEY, SESSION_USERS_KEY, ONLINE_USERS_KEY);
+
     private final StringRedisTemplate redisTemplate;
-    private final ObjectMapper objectMapper;
 
-    public RedisPresencePublisher(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
+    public RedisPresencePublisher(StringRedisTemplate redisTemplate) {
         this.redisTemplate = redisTemplate;
-        this.objectMapper = objectMapper;
     }
 
-    public void publishPresenceUpdate(String userId, boolean isOnline) {
-        try {
-            Map<String, Object> message = Map.of("userId", userId, "online", isOnline);
-            String jsonMessage = objectMapper.writeValueAsString(message);
-            redisTemplate.convertAndSend(PRESENCE_CHANNEL, jsonMessage);
-        } catch (JsonProcessingException e) {
-            // In a real application, you'd want to handle this error more gracefully
-            throw new RuntimeException("Could not serialize presence update to JSON", e);
+    /**
+     * Registers the sessions, or pushes their expiry forward if they are registered already.
+     */
+    public void touchSessions(Map<String, String> userIdsBySession, long expiresAtMillis) {
+        if (userIdsBySession.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(3 + userIdsBySession.size() * 2);
+        args.add(USER_SESSIONS_PREFIX);
+        args.add(PRESENCE_CHANNEL);
+        args.add(Long.toString(expiresAtMillis));
+        userIdsBySession.forEach((sessionId, userId) -> {
+            args.add(sessionId);
+            args.add(userId);
+        });
+        redisTemplate.execute(TOUCH_SESSIONS, KEYS, args.toArray());
+    }
+
+    public void removeSessions(Collection<String> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(2 + sessionIds.size());
+        args.add(USER_SESSIONS_PREFIX);
+        args.add(PRESENCE_CHANNEL);
+        args.addAll(sessionIds);
+        redisTemplate.execute(REMOVE_SESSIONS, KEYS, args.toArray());
+    }
+
+    /**
+     * Drops every session of the users and tells every node about it on {@link #SIGN_OFF_CHANNEL}.
+     */
+    public void removeUsers(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
         }
+        List<String> args = new ArrayList<>(3 + userIds.size());
+        args.add(USER_SESSIONS_PREFIX);
+        args.add(PRESENCE_CHANNEL);
+        args.add(SIGN_OFF_CHANNEL);
+        args.addAll(userIds);
+        redisTemplate.execute(REMOVE_USERS, KEYS, args.toArray());
+    }
+
+    /**
+     * Removes sessions whose heartbeat has expired, e.g. because their node crashed. Safe to run on every node.
+     *
+     * @return the number of users that went offline
+     */
+    public long sweepExpired(long nowMillis) {
+        Long offline = redisTemplate.execute(SWEEP_EXPIRED, KEYS,
+            USER_SESSIONS_PREFIX, PRESENCE_CHANNEL, Long.toString(nowMillis), Integer.toString(SWEEP_BATCH));
+        return offline != null ? offline : 0;
+    }
+
+    public Set<String> onlineUsers() {
+        return redisTemplate.opsForSet().members(ONLINE_USERS_KEY);
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,15 @@
 package com.lnt.chatmee.service;
 
 import java.io.IOException;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @Service
@@ -18,37 +17,49 @@ public class RedisPresenseSubcriber implements MessageListener {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisPresenseSubcriber.class);
     
-    private final SimpMessagingTemplate simpMessagingTemplate;
     private final ObjectMapper objectMapper;
     private final PresenseService presenseService;
+    private final RoomPresenceService roomPresenceService;
 
-    public RedisPresenseSubcriber(SimpMessagingTemplate simpMessagingTemplate, ObjectMapper objectMapper, PresenseService presenseService) {
-        this.simpMessagingTemplate = simpMessagingTemplate;
+    public RedisPresenseSubcriber(ObjectMapper objectMapper, PresenseService presenseService, RoomPresenceService roomPresenceService) {
         this.objectMapper = objectMapper;
         this.presenseService = presenseService;
+        this.roomPresenceService = roomPresenceService;
     }
 
     @Override
     public void onMessage(Message message, byte[] pattern) {
         try {
-            String jsonMessage = new String(message.getBody());
-            Map<String, Object> presenceUpdate = objectMapper.readValue(jsonMessage, new TypeReference<Map<String, Object>>() {});
-            String userId = (String) presenceUpdate.get("userId");
-            Boolean isOnlineObj = (Boolean) presenceUpdate.get("online");
-            boolean isOnline = isOnlineObj != null ? isOnlineObj : false;
-
-            if (isOnline) {
-                presenseService.userConnected(userId);
+            JsonNode body = objectMapper.readTree(message.getBody());
+            if (RedisPresencePublisher.SIGN_OFF_CHANNEL.equals(new String(message.getChannel(), StandardCharsets.UTF_8))) {
+                // ids of users signed off on some node; their sessions here must go too
+                body.forEach(userId -> presenseService.dropLocalSessions(userId.asText()));
+                return;
+            }
+            // one message per Redis script, listing every user it took online or offline
+            if (body.isArray()) {
+                body.forEach(this::applyChange);
             } else {
-                presenseService.userDisconnected(userId);
+                applyChange(body);
             }
-
-            // use the injected simpMessagingTemplate to broadcast presence updates
-            simpMessagingTemplate.convertAndSend("/topic/presence", presenceUpdate);
         } catch (IOException e) {
             logger.error("Failed to parse presence update from Redis message", e);
         } catch (Exception e) {
             logger.error("Unexpected error handling Redis presence message", e);
         }
     }
+
+    private void applyChange(JsonNode change) {
+        String userId = change.path("userId").asText(null);
+        if (userId == null) {
+            return;
+        }
+        boolean isOnline = change.path("online").asBoolean(false);
+
+        // the store only publishes real online/offline transitions, one per user and cluster
+        presenseService.applyChange(userId, isOnline);
+
+        // collected into one delta per room and flush window
+        roomPresenceService.recordChange(userId, isOnline);
+    }
 }
@@ -0,0 +1,133 @@
+package com.lnt.chatmee.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+/**
+ * Token bucket rate limits in Redis, the cluster-wide source of truth behind {@link RateLimitingService}.
+ *
+ * Each tier has several limits, e.g. a short burst limit and a per-minute one, and a request has to fit in
+ * all of them. Every limit is a token bucket refilled continuously over its period. A lease takes up to the
+ * requested number of tokens from all buckets of a client at once, and gives back the unused part of the
+ * previous lease, in one Lua script: the buckets are refilled, checked and charged atomically in a single
+ * round trip, and every write sets an expiry so an idle key always goes away. The script uses the Redis
+ * clock, so nodes with drifting clocks still agree.
+ */
+@Service
+public class RedisRateLimiter {
+
+    private static final String KEY_PREFIX = "rate_limit:";
+
+    // KEYS: one bucket per limit   ARGV: tokens requested, tokens refunded, then capacity and period in ms per bucket
+    // returns {granted, limit, remaining, resetMs, retryAfterMs}, the last four for the tightest bucket
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TOKEN_BUCKET = new DefaultRedisScript<>(
+        "redis.replicate_commands()\n"
+        + "local time = redis.call('TIME')\n"
+        + "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n"
+        + "local tokens, granted, refund, retry = {}, tonumber(ARGV[1]), tonumber(ARGV[2]), 0\n"
+        + "for i, key in ipairs(KEYS) do\n"
+        + "  local capacity, rate = tonumber(ARGV[2 * i + 1]), tonumber(ARGV[2 * i + 1]) / tonumber(ARGV[2 * i + 2])\n"
+        + "  local state = redis.call('HMGET', key, 't', 'ts')\n"
+        + "  local t = tonumber(state[1]) or capacity\n"
+        + "  local elapsed = math.max(0, now - (tonumber(state[2]) or now))\n"
+        + "  t = math.min(capacity, t + elapsed * rate + refund)\n"
+        + "  granted = math.min(granted, math.floor(t))\n"
+        + "  tokens[i] = t\n"
+        + "end\n"
+        + "granted = math.max(granted, 0)\n"
+        + "local limit, remaining, reset = 0, -1, 0\n"
+        + "for i, key in ipairs(KEYS) do\n"
+        + "  local capacity, period = tonumber(ARGV[2 * i + 1]), tonumber(ARGV[2 * i + 2])\n"
+        + "  local t = tokens[i] - granted\n"
+        + "  if t < 1 then retry = math.max(retry, math.ceil((1 - t) * period / capacity)) end\n"
+        + "  redis.call('HSET', key, 't', tostring(t), 'ts', now)\n"
+        + "  redis.call('PEXPIRE', key, period)\n"
+        + "  if remaining < 0 or math.floor(t) < remaining then\n"
+        + "    limit, remaining = capacity, math.floor(t)\n"
+        + "    reset = math.ceil((capacity - t) * period / capacity)\n"
+        + "  end\n"
+        + "end\n"
+        + "return {granted, limit, remaining, reset, retry}", List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Map<RateLimitTier, List<Limit>> limits = new EnumMap<>(RateLimitTier.class);
+
+    public RedisRateLimiter(StringRedisTemplate redisTemplate,
+            @Value("${app.rate-limit.public.per-second:5}") int publicPerSecond,
+            @Value("${app.rate-limit.public.per-minute:20}") int publicPerMinute,
+            @Value("${app.rate-limit.authenticated.per-second:20}") int authenticatedPerSecond,
+            @Value("${app.rate-limit.authenticated.per-minute:100}") int authenticatedPerMinute) {
+        this.redisTemplate = redisTemplate;
+        limits.put(RateLimitTier.PUBLIC, List.of(
+            new Limit("s", publicPerSecond, 1_000), new Limit("m", publicPerMinute, 60_000)));
+        limits.put(RateLimitTier.AUTHENTICATED, List.of(
+            new Limit("s", authenticatedPerSecond, 1_000), new Limit("m", authenticatedPerMinute, 60_000)));
+    }
+
+    /**
+     * Takes up to {@code requested} tokens from every limit of the tier; as many as the emptiest bucket
+     * can give, so none when any limit is exhausted. {@code refunded} tokens of an earlier lease that went
+     * unused are put back first.
+     */
+    public RateLimitLease lease(String key, RateLimitTier tier, int requested, long refunded) {
+        List<Limit> tierLimits = limits.get(tier);
+        List<String> keys = new ArrayList<>(tierLimits.size());
+        Object[] args = new Object[2 + tierLimits.size() * 2];
+        args[0] = Integer.toString(requested);
+        args[1] = Long.toString(refunded);
+        for (int i = 0; i < tierLimits.size(); i++) {
+            Limit limit = tierLimits.get(i);
+            // the hash tag keeps all buckets of a client in one cluster slot, as the script needs
+            keys.add(KEY_PREFIX + "{" + key + "}:" + limit.name);
+            args[2 + 2 * i] = Integer.toString(limit.capacity);
+            args[3 + 2 * i] = Long.toString(limit.periodMillis);
+        }
+
+        List<?> result = redisTemplate.execute(TOKEN_BUCKET, keys, args);
+        if (result == null || result.size() < 5) {
+            throw new IllegalStateException("Unexpected rate limit script result: " + result);
+        }
+        return new RateLimitLease(number(result.get(0)), number(result.get(1)), number(result.get(2)),
+            number(result.get(3)), number(result.get(4)));
+    }
+
+    /**
+     * Largest lease worth taking for the tier: a quarter of its longest-period bucket, so one node never
+     * holds most of a client's budget, but no more than its smallest bucket, since a lease can be spent
+     * within a single burst window.
+     */
+    public int maxLease(RateLimitTier tier) {
+        List<Limit> tierLimits = limits.get(tier);
+        int burst = tierLimits.stream().mapToInt(limit -> limit.capacity).min().orElse(1);
+        int budget = tierLimits.stream().max(Comparator.comparingLong((Limit limit) -> limit.periodMillis))
+            .map(limit -> limit.capacity)
+            .orElse(burst);
+        return Math.max(1, Math.min(burst, budget / 4));
+    }
+
+    private static long number(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static final class Limit {
+        private final String name;
+        private final int capacity;
+        private final long periodMillis;
+
+        private Limit(String name, int capacity, long periodMillis) {
+            this.name = name;
+            this.capacity = capacity;
+            this.periodMillis = periodMillis;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.lnt.chatmee.service;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Single entry point for room broadcasts.
+ *
+ * The payload is serialized to JSON exactly once and published as a byte[] message, so the broker
+ * hands the same immutable array to every subscriber session instead of converting per send.
+ * The same bytes are relayed to the other nodes through {@link RoomFanoutRelay}.
+ */
+@Service
+public class RoomBroadcaster {
+
+    public static final String ROOM_TOPIC_PREFIX = "/topic/public/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final RoomFanoutRelay roomFanoutRelay;
+    private final DistributionSummary bytesEncoded;
+
+    public RoomBroadcaster(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper,
+            RoomFanoutRelay roomFanoutRelay, MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.roomFanoutRelay = roomFanoutRelay;
+        this.bytesEncoded = DistributionSummary.builder("chatmee.broadcast.bytes.encoded")
+            .description("Payload bytes serialized per room broadcast")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    public void broadcast(String roomId, Object payload) {
+        sendEncoded(ROOM_TOPIC_PREFIX + roomId, encode(payload));
+    }
+
+    public byte[] encode(Object payload) {
+        try {
+            byte[] bytes = objectMapper.writeValueAsBytes(payload);
+            bytesEncoded.record(bytes.length);
+            return bytes;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize broadcast payload", e);
+        }
+    }
+
+    /**
+     * Delivers the payload to this node's subscribers and relays it once to the other nodes.
+     */
+    public void sendEncoded(String destination, byte[] payload) {
+        messagingTemplate.send(destination, jsonMessage(payload));
+        roomFanoutRelay.publish(destination, payload);
+    }
+
+    static Message<byte[]> jsonMessage(byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,230 @@
+package com.lnt.chatmee.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.dto.response.ChatMessageResponse;
+import com.lnt.chatmee.util.NodeIdentity;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Relays room broadcasts between application nodes over Redis pub/sub.
+ *
+ * The simple broker only reaches sessions connected to this JVM, so every room broadcast is also published
+ * once on a Redis channel named after its destination. A node subscribes to a room's channel only while at
+ * least one of its own sessions is subscribed to the room, and drops the messages it published itself since
+ * those were already delivered locally. A room's hot buffer is only kept while its channel is subscribed,
+ * because outside that window the node misses what other nodes send to the room; the room is tracked in
+ * {@link HotRoomBuffer} together with the channel subscription.
+ */
+@Service
+public class RoomFanoutRelay implements MessageListener {
+
+    public static final String CHANNEL_PREFIX = "room-relay:";
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomFanoutRelay.class);
+
+    private final RedisMessageListenerContainer container;
+    private final StringRedisTemplate redisTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final HotRoomBuffer hotRoomBuffer;
+    private final ObjectMapper objectMapper;
+    private final byte[] nodeIdBytes;
+    private final boolean enabled;
+
+    // sessionId -> (subscriptionId -> destination), to release subscriptions on UNSUBSCRIBE and DISCONNECT
+    private final Map<String, Map<String, String>> sessionSubscriptions = new ConcurrentHashMap<>();
+    // destination -> number of local subscriptions; the Redis channel is subscribed while this is above zero
+    private final Map<String, Integer> localSubscribers = new ConcurrentHashMap<>();
+
+    private final Counter published;
+    private final Counter received;
+    private final Timer deliveryLatency;
+
+    public RoomFanoutRelay(@Qualifier("roomRelayContainer") RedisMessageListenerContainer container,
+            StringRedisTemplate redisTemplate,
+            SimpMessagingTemplate messagingTemplate,
+            HotRoomBuffer hotRoomBuffer,
+            ObjectMapper objectMapper,
+            NodeIdentity nodeIdentity,
+            MeterRegistry meterRegistry,
+            @Value("${app.websocket.relay.enabled:true}") boolean enabled) {
+        this.container = container;
+        this.redisTemplate = redisTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.hotRoomBuffer = hotRoomBuffer;
+        this.objectMapper = objectMapper;
+        this.nodeIdBytes = nodeIdentity.getNodeId().getBytes(StandardCharsets.UTF_8);
+        this.enabled = enabled;
+        this.published = Counter.builder("chatmee.relay.published").register(meterRegistry);
+        this.received = Counter.builder("chatmee.relay.received").register(meterRegistry);
+        this.deliveryLatency = Timer.builder("chatmee.relay.delivery.latency")
+            .description("Time from publishing a broadcast on one node to handing it to the local broker on another")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+        Gauge.builder("chatmee.relay.channels", localSubscribers, Map::size)
+            .description("Room channels this node is subscribed to")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Publishes an already encoded broadcast to the other nodes. Local sessions are not served from here.
+     */
+    public void publish(String destination, byte[] payload) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            byte[] envelope = encodeEnvelope(payload);
+            redisTemplate.execute(connection -> connection.publish((CHANNEL_PREFIX + destination).getBytes(StandardCharsets.UTF_8), envelope), true);
+            published.increment();
+        } catch (Exception e) {
+            // local delivery already happened; only sessions on other nodes miss this message
+            logger.warn("Could not relay broadcast to {}", destination, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            ByteBuffer envelope = ByteBuffer.wrap(message.getBody());
+            byte[] origin = new byte[envelope.getShort()];
+            envelope.get(origin);
+            if (Arrays.equals(origin, nodeIdBytes)) {
+                return;
+            }
+            long publishedAt = envelope.getLong();
+            byte[] payload = new byte[envelope.remaining()];
+            envelope.get(payload);
+
+            String destination = new String(message.getChannel(), StandardCharsets.UTF_8).substring(CHANNEL_PREFIX.length());
+            messagingTemplate.send(destination, RoomBroadcaster.jsonMessage(payload));
+            received.increment();
+            deliveryLatency.record(Math.max(0, System.currentTimeMillis() - publishedAt), TimeUnit.MILLISECONDS);
+
+            appendToHotRoom(destination, payload);
+        } catch (Exception e) {
+            logger.error("Failed to deliver relayed broadcast", e);
+        }
+    }
+
+    @EventListener
+    public void handleSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (!enabled || destination == null || !destination.startsWith(RoomBroadcaster.ROOM_TOPIC_PREFIX)) {
+            return;
+        }
+
+        String previous = sessionSubscriptions
+            .computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+            .put(accessor.getSubscriptionId(), destination);
+        if (previous == null) {
+            retain(destination);
+        } else if (!previous.equals(destination)) {
+            retain(destination);
+            release(previous);
+        }
+    }
+
+    @EventListener
+    public void handleUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessionSubscriptions.get(accessor.getSessionId());
+        if (subscriptions == null) {
+            return;
+        }
+        String destination = subscriptions.remove(accessor.getSubscriptionId());
+        if (destination != null) {
+            release(destination);
+        }
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    // tracking changes inside compute so it cannot interleave with a concurrent retain or release of the room
+    private void retain(String destination) {
+        localSubscribers.compute(destination, (key, count) -> {
+            if (count == null) {
+                container.addMessageListener(this, new ChannelTopic(CHANNEL_PREFIX + key));
+                hotRoomBuffer.track(roomId(key));
+                logger.debug("Subscribed to relay channel for {}", key);
+                return 1;
+            }
+            return count + 1;
+        });
+    }
+
+    private void release(String destination) {
+        localSubscribers.computeIfPresent(destination, (key, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            container.removeMessageListener(this, new ChannelTopic(CHANNEL_PREFIX + key));
+            // without the channel this node stops seeing other nodes' messages, so the buffer would go stale
+            hotRoomBuffer.untrack(roomId(key));
+            logger.debug("Unsubscribed from relay channel for {}", key);
+            return null;
+        });
+    }
+
+    private void appendToHotRoom(String destination, byte[] payload) throws IOException {
+        String roomId = roomId(destination);
+        if (!hotRoomBuffer.isWarm(roomId)) {
+            return;
+        }
+        ChatMessageResponse response = objectMapper.readValue(payload, ChatMessageResponse.class);
+        // only persisted chat messages carry a sequence number; join notices and the like are not history
+        if (response.getSeq() > 0) {
+            response.setTempId(null);
+            hotRoomBuffer.append(roomId, response);
+        }
+    }
+
+    private static String roomId(String destination) {
+        return destination.substring(RoomBroadcaster.ROOM_TOPIC_PREFIX.length());
+    }
+
+    private byte[] encodeEnvelope(byte[] payload) {
+        // [short origin length][origin node id][long publish time millis][payload]
+        ByteBuffer envelope = ByteBuffer.allocate(2 + nodeIdBytes.length + 8 + payload.length);
+        envelope.putShort((short) nodeIdBytes.length);
+        envelope.put(nodeIdBytes);
+        envelope.putLong(System.currentTimeMillis());
+        envelope.put(payload);
+        return envelope.array();
+    }
+}
@@ -0,0 +1,290 @@
+package com.lnt.chatmee.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.dto.MembershipChange;
+import com.lnt.chatmee.dto.MembershipChange.Action;
+import com.lnt.chatmee.model.Participant;
+import com.lnt.chatmee.repository.ParticipantRepository;
+import com.lnt.chatmee.util.NodeIdentity;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * In-memory index of room membership used by the send path.
+ *
+ * Each cached room holds its member ids as a sorted array, which is far smaller than a hash set and is
+ * searched in O(log n). Rooms are kept in an access-ordered map bounded to a configurable number of rooms.
+ * Local changes are applied directly and published on Redis so the other nodes can apply them too.
+ *
+ * A membership check on a room that is not cached is answered with a single existence query, and the
+ * room's member list is then loaded in the background so the following checks are served from memory.
+ */
+@Service
+public class RoomMembershipCache {
+
+    public static final String MEMBERSHIP_CHANNEL = "room-membership-channel";
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomMembershipCache.class);
+
+    private final ParticipantRepository participantRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final NodeIdentity nodeIdentity;
+    private final long ttlNanos;
+    private final Executor loader;
+
+    private final Map<String, RoomMembers> rooms;
+    // rooms with a background load queued or running
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    // bumped on every change so a load racing with an update never caches a stale snapshot
+    private final AtomicLong version = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public RoomMembershipCache(ParticipantRepository participantRepository,
+            StringRedisTemplate redisTemplate,
+            ObjectMapper objectMapper,
+            NodeIdentity nodeIdentity,
+            MeterRegistry meterRegistry,
+            @Value("${app.membership-cache.max-rooms:10000}") int maxRooms,
+            @Value("${app.membership-cache.ttl-seconds:600}") long ttlSeconds) {
+        this(participantRepository, redisTemplate, objectMapper, nodeIdentity, meterRegistry, maxRooms, ttlSeconds,
+            Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "membership-loader");
+                thread.setDaemon(true);
+                return thread;
+            }));
+    }
+
+    RoomMembershipCache(ParticipantRepository participantRepository,
+            StringRedisTemplate redisTemplate,
+            ObjectMapper objectMapper,
+            NodeIdentity nodeIdentity,
+            MeterRegistry meterRegistry,
+            int maxRooms,
+            long ttlSeconds,
+            Executor loader) {
+        this.participantRepository = participantRepository;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.nodeIdentity = nodeIdentity;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.loader = loader;
+        this.rooms = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RoomMembers> eldest) {
+                return size() > maxRooms;
+            }
+        };
+        this.hits = Counter.builder("chatmee.membership.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chatmee.membership.cache").tag("result", "miss").register(meterRegistry);
+    }
+
+    public boolean isMember(String roomId, String userId) {
+        RoomMembers members = cached(roomId);
+        if (members != null) {
+            hits.increment();
+            return members.contains(userId);
+        }
+
+        misses.increment();
+        boolean member = participantRepository.existsByChatRoomIdAndUserId(roomId, userId);
+        if (member) {
+            // only rooms someone is actually using are worth holding; non-members never trigger a load
+            prefetch(roomId);
+        }
+        return member;
+    }
+
+    /**
+     * Whether the room's member list is cached, so {@link #isMember} costs no query.
+     */
+    public boolean isCached(String roomId) {
+        return cached(roomId) != null;
+    }
+
+    /**
+     * Loads the room's member list in the background unless it is cached or already being loaded.
+     */
+    public void prefetch(String roomId) {
+        if (isCached(roomId) || !loading.add(roomId)) {
+            return;
+        }
+        try {
+            loader.execute(() -> {
+                try {
+                    load(roomId);
+                } catch (Exception e) {
+                    // the next check on the room answers with an existence query and tries again
+                    logger.warn("Could not load members of room {}", roomId, e);
+                } finally {
+                    loading.remove(roomId);
+                }
+            });
+        } catch (RuntimeException e) {
+            loading.remove(roomId);
+            throw e;
+        }
+    }
+
+    /**
+     * All member ids of the room, sorted.
+     */
+    public List<String> members(String roomId) {
+        return Collections.unmodifiableList(Arrays.asList(current(roomId).userIds));
+    }
+
+    private RoomMembers current(String roomId) {
+        RoomMembers members = cached(roomId);
+        if (members != null) {
+            hits.increment();
+            return members;
+        }
+
+        misses.increment();
+        return load(roomId);
+    }
+
+    private RoomMembers cached(String roomId) {
+        RoomMembers members;
+        synchronized (rooms) {
+            members = rooms.get(roomId);
+        }
+        return members != null && System.nanoTime() - members.loadedAt < ttlNanos ? members : null;
+    }
+
+    /**
+     * Records a new member locally and tells the other nodes.
+     */
+    public void addMember(String roomId, String userId) {
+        apply(roomId, userId, Action.ADDED);
+        publish(new MembershipChange(nodeIdentity.getNodeId(), roomId, userId, Action.ADDED));
+    }
+
+    public void removeMember(String roomId, String userId) {
+        apply(roomId, userId, Action.REMOVED);
+        publish(new MembershipChange(nodeIdentity.getNodeId(), roomId, userId, Action.REMOVED));
+    }
+
+    public void removeRoom(String roomId) {
+        apply(roomId, null, Action.ROOM_DELETED);
+        publish(new MembershipChange(nodeIdentity.getNodeId(), roomId, null, Action.ROOM_DELETED));
+    }
+
+    /**
+     * Applies a change received from another node.
+     */
+    public void onRemoteChange(MembershipChange change) {
+        if (nodeIdentity.isSelf(change.getNodeId())) {
+            return;
+        }
+        apply(change.getRoomId(), change.getUserId(), change.getAction());
+    }
+
+    private void apply(String roomId, String userId, Action action) {
+        synchronized (rooms) {
+            version.incrementAndGet();
+            RoomMembers members = rooms.get(roomId);
+            switch (action) {
+                case ADDED:
+                    if (members != null) {
+                        rooms.put(roomId, members.with(userId));
+                    }
+                    break;
+                case REMOVED:
+                    if (members != null) {
+                        rooms.put(roomId, members.without(userId));
+                    }
+                    break;
+                case ROOM_DELETED:
+                    rooms.remove(roomId);
+                    break;
+            }
+        }
+    }
+
+    private RoomMembers load(String roomId) {
+        long versionBeforeLoad = version.get();
+        String[] userIds = participantRepository.findUserIdsByChatRoomId(roomId).stream()
+            .map(Participant::getUserId)
+            .sorted()
+            .toArray(String[]::new);
+        RoomMembers members = new RoomMembers(userIds, System.nanoTime());
+
+        synchronized (rooms) {
+            if (version.get() == versionBeforeLoad) {
+                rooms.put(roomId, members);
+            }
+        }
+        return members;
+    }
+
+    private void publish(MembershipChange change) {
+        try {
+            redisTemplate.convertAndSend(MEMBERSHIP_CHANNEL, objectMapper.writeValueAsString(change));
+        } catch (Exception e) {
+            // Other nodes fall back to the cache TTL if they miss this change
+            logger.warn("Could not publish membership change for room {}", change.getRoomId(), e);
+        }
+    }
+
+    private static final class RoomMembers {
+        private final String[] userIds;
+        private final long loadedAt;
+
+        private RoomMembers(String[] userIds, long loadedAt) {
+            this.userIds = userIds;
+            this.loadedAt = loadedAt;
+        }
+
+        private boolean contains(String userId) {
+            return Arrays.binarySearch(userIds, userId) >= 0;
+        }
+
+        private RoomMembers with(String userId) {
+            int index = Arrays.binarySearch(userIds, userId);
+            if (index >= 0) {
+                return this;
+            }
+            int insertAt = -index - 1;
+            String[] updated = new String[userIds.length + 1];
+            System.arraycopy(userIds, 0, updated, 0, insertAt);
+            updated[insertAt] = userId;
+            System.arraycopy(userIds, insertAt, updated, insertAt + 1, userIds.length - insertAt);
+            return new RoomMembers(updated, loadedAt);
+        }
+
+        private RoomMembers without(String userId) {
+            int index = Arrays.binarySearch(userIds, userId);
+            if (index < 0) {
+                return this;
+            }
+            String[] updated = new String[userIds.length - 1];
+            System.arraycopy(userIds, 0, updated, 0, index);
+            System.arraycopy(userIds, index + 1, updated, index, userIds.length - index - 1);
+            return new RoomMembers(updated, loadedAt);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.lnt.chatmee.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import com.lnt.chatmee.dto.PresenceDelta;
+import com.lnt.chatmee.dto.RoomPresenceSnapshot;
+import com.lnt.chatmee.model.Participant;
+import com.lnt.chatmee.repository.ParticipantRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Presence scoped to the rooms clients have open.
+ *
+ * A client subscribes to /topic/presence/{roomId} for deltas and to /app/presence/rooms/{roomId} for a
+ * one-off snapshot of the room's online members. Both are only served to members of the room; the topic
+ * SUBSCRIBE of anyone else is refused by SessionIdentityInterceptor. When a user goes online or offline, a
+ * delta is sent only to the rooms of that user that have subscribers on this node, so a presence change
+ * costs frames in proportion to the user's audience instead of to everyone connected. Every node receives
+ * the presence change stream, so each one serves its own subscribers and nothing has to be relayed.
+ *
+ * Changes are gathered for one flush interval and published as a single {@link PresenceDelta} per room,
+ * with users that flipped back to where they started left out, so mass reconnects do not turn into a
+ * storm of single-user frames. The rooms of the changed users are read with one query per flush and
+ * intersected with the subscribed rooms, so a flush costs in proportion to the memberships of the users
+ * that changed rather than to the number of subscribed rooms times the number of changes.
+ */
+@Service
+public class RoomPresenceService implements SmartLifecycle {
+
+    public static final String ROOM_PRESENCE_PREFIX = "/topic/presence/";
+    public static final String GLOBAL_PRESENCE_TOPIC = "/topic/presence";
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomPresenceService.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final RoomMembershipCache roomMembershipCache;
+    private final ParticipantRepository participantRepository;
+    private final PresenseService presenseService;
+    private final boolean globalTopicEnabled;
+    private final long flushIntervalMs;
+
+    // sessionId -> (subscriptionId -> roomId), to release subscriptions on UNSUBSCRIBE and DISCONNECT
+    private final Map<String, Map<String, String>> sessionSubscriptions = new ConcurrentHashMap<>();
+    // roomId -> number of local presence subscriptions
+    private final Map<String, Integer> subscribedRooms = new ConcurrentHashMap<>();
+
+    // userId -> change since the last flush, guarded by pendingLock
+    private final Object pendingLock = new Object();
+    private Map<String, PendingChange> pending = new HashMap<>();
+
+    private final Counter changes;
+    private final Counter deltasPublished;
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    public RoomPresenceService(SimpMessagingTemplate messagingTemplate,
+            RoomMembershipCache roomMembershipCache,
+            ParticipantRepository participantRepository,
+            PresenseService presenseService,
+            MeterRegistry meterRegistry,
+            @Value("${app.presence.global-topic.enabled:false}") boolean globalTopicEnabled,
+            @Value("${app.presence.flush-interval-ms:250}") long flushIntervalMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.roomMembershipCache = roomMembershipCache;
+        this.participantRepository = participantRepository;
+        this.presenseService = presenseService;
+        this.globalTopicEnabled = globalTopicEnabled;
+        this.flushIntervalMs = flushIntervalMs;
+
+        // frames per change = chatmee.presence.frames.sent / chatmee.presence.changes
+        this.changes = Counter.builder("chatmee.presence.changes")
+            .description("Users going online or offline, as seen by this node")
+            .register(meterRegistry);
+        this.deltasPublished = Counter.builder("chatmee.presence.deltas.published")
+            .description("Presence deltas handed to the broker, one per room topic")
+            .register(meterRegistry);
+        Gauge.builder("chatmee.presence.rooms", subscribedRooms, Map::size)
+            .description("Rooms with presence subscribers on this node")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Online members of the room, or nothing when the asking user is not a member.
+     */
+    public RoomPresenceSnapshot snapshot(String roomId, String userId) {
+        if (userId == null || !roomMembershipCache.isMember(roomId, userId)) {
+            return new RoomPresenceSnapshot(roomId, List.of());
+        }
+        List<String> online = roomMembershipCache.members(roomId).stream()
+            .filter(presenseService::isUserOnline)
+            .toList();
+        return new RoomPresenceSnapshot(roomId, online);
+    }
+
+    /**
+     * Queues an entry of the presence change stream for the next delta.
+     */
+    public void recordChange(String userId, boolean online) {
+        changes.increment();
+        synchronized (pendingLock) {
+            PendingChange change = pending.get(userId);
+            if (change == null) {
+                pending.put(userId, new PendingChange(!online, online));
+            } else {
+                change.current = online;
+            }
+        }
+    }
+
+    void flush() {
+        Map<String, PendingChange> batch;
+        synchronized (pendingLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+
+        List<String> online = new ArrayList<>();
+        List<String> offline = new ArrayList<>();
+        batch.forEach((userId, change) -> {
+            if (change.current != change.before) {
+                (change.current ? online : offline).add(userId);
+            }
+        });
+        if (online.isEmpty() && offline.isEmpty()) {
+            return;
+        }
+
+        if (!subscribedRooms.isEmpty()) {
+            Set<String> changedOnline = new HashSet<>(online);
+            Map<String, PresenceDelta> deltas = new HashMap<>();
+            List<String> changedUsers = new ArrayList<>(online);
+            changedUsers.addAll(offline);
+            for (Participant membership : participantRepository.findRoomIdsByUserIdIn(changedUsers)) {
+                String roomId = membership.getChatRoomId();
+                if (!subscribedRooms.containsKey(roomId)) {
+                    continue;
+                }
+                PresenceDelta delta = deltas.computeIfAbsent(roomId, id -> new PresenceDelta(id, new ArrayList<>(), new ArrayList<>()));
+                (changedOnline.contains(membership.getUserId()) ? delta.getOnline() : delta.getOffline()).add(membership.getUserId());
+            }
+            deltas.forEach((roomId, delta) -> {
+                messagingTemplate.convertAndSend(ROOM_PRESENCE_PREFIX + roomId, delta);
+                deltasPublished.increment();
+            });
+        }
+        if (globalTopicEnabled) {
+            messagingTemplate.convertAndSend(GLOBAL_PRESENCE_TOPIC, new PresenceDelta(null, online, offline));
+        }
+    }
+
+    @EventListener
+    public void handleSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(ROOM_PRESENCE_PREFIX)) {
+            return;
+        }
+
+        String roomId = destination.substring(ROOM_PRESENCE_PREFIX.length());
+        String previous = sessionSubscriptions
+            .computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+            .put(accessor.getSubscriptionId(), roomId);
+        if (previous == null) {
+            retain(roomId);
+        } else if (!previous.equals(roomId)) {
+            retain(roomId);
+            release(previous);
+        }
+    }
+
+    @EventListener
+    public void handleUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessionSubscriptions.get(accessor.getSessionId());
+        if (subscriptions == null) {
+            return;
+        }
+        String roomId = subscriptions.remove(accessor.getSubscriptionId());
+        if (roomId != null) {
+            release(roomId);
+        }
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    private void retain(String roomId) {
+        subscribedRooms.merge(roomId, 1, Integer::sum);
+        logger.debug("Presence subscription added for room {}", roomId);
+    }
+
+    private void release(String roomId) {
+        subscribedRooms.computeIfPresent(roomId, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "presence-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                logger.error("Presence delta flush failed", e);
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static final class PendingChange {
+        private final boolean before;
+        private boolean current;
+
+        private PendingChange(boolean before, boolean current) {
+            this.before = before;
+            this.current = current;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.lnt.chatmee.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import com.lnt.chatmee.model.Message;
+import com.lnt.chatmee.repository.MessageRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Hands out a gap-free, monotonically increasing sequence number per room.
+ *
+ * The counter lives in Redis so every node stamps from the same sequence. Every allocation runs one script
+ * that raises the counter to this node's floor before incrementing it: the highest number this node has
+ * issued for the room, which also covers its messages still waiting in the write-behind queue or the journal.
+ * If the counter is gone (Redis restarted, was flushed or failed over without it) the script refuses to
+ * guess and the node reseeds it from the highest sequence stored in MongoDB, read fresh at that moment.
+ * What no node can see are the unflushed messages of other nodes at the time Redis lost the counter,
+ * which is bounded by the write-behind flush interval.
+ *
+ * This costs one Redis round trip per message on the inbound thread, the same as the plain INCR it
+ * replaces. Numbers are not allocated in blocks because that would break the single order across nodes.
+ */
+@Service
+@RequiredArgsConstructor
+public class RoomSequenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomSequenceService.class);
+
+    private static final String SEQUENCE_KEY_PREFIX = "room_seq:";
+
+    private static final long MISSING = -1;
+
+    // KEYS: counter   ARGV: floor, whether the floor was just read from MongoDB ("1") or is local only ("0")
+    private static final RedisScript<Long> NEXT_SEQUENCE = new DefaultRedisScript<>(
+        "local current = redis.call('GET', KEYS[1])\n"
+        + "if not current and ARGV[2] == '0' then return -1 end\n"
+        + "if not current or tonumber(current) < tonumber(ARGV[1]) then redis.call('SET', KEYS[1], ARGV[1]) end\n"
+        + "return redis.call('INCR', KEYS[1])", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MessageRepository messageRepository;
+    // highest sequence this node has issued per room
+    private final Map<String, Long> issued = new ConcurrentHashMap<>();
+
+    public long next(String roomId) {
+        List<String> keys = List.of(SEQUENCE_KEY_PREFIX + roomId);
+        long floor = issued.getOrDefault(roomId, 0L);
+
+        Long seq = redisTemplate.execute(NEXT_SEQUENCE, keys, Long.toString(floor), "0");
+        if (seq != null && seq == MISSING) {
+            long persisted = messageRepository.findTopByChatRoomIdOrderBySeqDesc(roomId)
+                .map(Message::getSeq)
+                .orElse(0L);
+            logger.info("Sequence of room {} missing in Redis, reseeding from max({}, {})", roomId, persisted, floor);
+            seq = redisTemplate.execute(NEXT_SEQUENCE, keys, Long.toString(Math.max(persisted, floor)), "1");
+        }
+        if (seq == null || seq == MISSING) {
+            throw new IllegalStateException("Could not allocate sequence number for room " + roomId);
+        }
+
+        issued.merge(roomId, seq, Math::max);
+        return seq;
+    }
+}
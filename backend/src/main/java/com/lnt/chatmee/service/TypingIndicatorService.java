@@ -0,0 +1,222 @@
+package com.lnt.chatmee.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.dto.TypingChange;
+import com.lnt.chatmee.dto.TypingSnapshot;
+import com.lnt.chatmee.util.NodeIdentity;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Coalesces typing events into one "who is typing" snapshot per room.
+ *
+ * Clients send a typing event on (almost) every keystroke. Instead of re-broadcasting each of them, the
+ * latest state is kept per room with an expiry, and on every tick a snapshot is published for each room
+ * whose set of typing users changed. Start/stop transitions (and a refresh every half expiry) are shared
+ * with the other nodes over Redis so every node publishes the same set to its own subscribers.
+ */
+@Service
+public class TypingIndicatorService implements SmartLifecycle, MessageListener {
+
+    public static final String TYPING_CHANNEL = "typing-channel";
+
+    private static final Logger logger = LoggerFactory.getLogger(TypingIndicatorService.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final NodeIdentity nodeIdentity;
+    private final long flushIntervalMs;
+    private final long ttlNanos;
+
+    private final Map<String, RoomTyping> rooms = new ConcurrentHashMap<>();
+
+    private final Counter eventsReceived;
+    private final Counter snapshotsPublished;
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    public TypingIndicatorService(SimpMessagingTemplate messagingTemplate,
+            StringRedisTemplate redisTemplate,
+            ObjectMapper objectMapper,
+            NodeIdentity nodeIdentity,
+            MeterRegistry meterRegistry,
+            @Value("${app.typing.flush-interval-ms:250}") long flushIntervalMs,
+            @Value("${app.typing.ttl-ms:5000}") long ttlMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.nodeIdentity = nodeIdentity;
+        this.flushIntervalMs = flushIntervalMs;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+
+        // "received" is what used to be re-broadcast one by one, "published" is what goes out now
+        this.eventsReceived = Counter.builder("chatmee.typing.frames").tag("stage", "received").register(meterRegistry);
+        this.snapshotsPublished = Counter.builder("chatmee.typing.frames").tag("stage", "published").register(meterRegistry);
+    }
+
+    public void onTyping(String roomId, String userId, boolean typing) {
+        eventsReceived.increment();
+        long now = System.nanoTime();
+        boolean[] forward = new boolean[1];
+        rooms.compute(roomId, (id, room) -> {
+            RoomTyping state = room != null ? room : new RoomTyping();
+            forward[0] = state.apply(userId, typing, now, ttlNanos);
+            return state;
+        });
+        if (forward[0]) {
+            publish(new TypingChange(nodeIdentity.getNodeId(), roomId, userId, typing));
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            TypingChange change = objectMapper.readValue(message.getBody(), TypingChange.class);
+            if (nodeIdentity.isSelf(change.getNodeId())) {
+                return;
+            }
+            long now = System.nanoTime();
+            rooms.compute(change.getRoomId(), (id, room) -> {
+                RoomTyping state = room != null ? room : new RoomTyping();
+                state.apply(change.getUserId(), change.isTyping(), now, ttlNanos);
+                return state;
+            });
+        } catch (Exception e) {
+            logger.error("Failed to handle typing change from Redis message", e);
+        }
+    }
+
+    void flush() {
+        long now = System.nanoTime();
+        List<TypingSnapshot> snapshots = new ArrayList<>();
+        for (String roomId : rooms.keySet()) {
+            rooms.computeIfPresent(roomId, (id, room) -> {
+                room.expire(now);
+                if (room.changed) {
+                    snapshots.add(new TypingSnapshot(id, room.sortedUserIds()));
+                    room.changed = false;
+                }
+                return room.typingUntil.isEmpty() ? null : room;
+            });
+        }
+
+        for (TypingSnapshot snapshot : snapshots) {
+            messagingTemplate.convertAndSend("/topic/typing/" + snapshot.getRoomId(), snapshot);
+            snapshotsPublished.increment();
+        }
+    }
+
+    private void publish(TypingChange change) {
+        try {
+            redisTemplate.convertAndSend(TYPING_CHANNEL, objectMapper.writeValueAsString(change));
+        } catch (Exception e) {
+            // other nodes just miss this indicator until the next refresh
+            logger.warn("Could not publish typing change for room {}", change.getRoomId(), e);
+        }
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "typing-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                logger.error("Typing snapshot flush failed", e);
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Typing state of one room. Only accessed inside ConcurrentHashMap.compute, which serializes access per room.
+     */
+    private static final class RoomTyping {
+        private final Map<String, Long> typingUntil = new HashMap<>();
+        private final Map<String, Long> forwardedAt = new HashMap<>();
+        private boolean changed;
+
+        /**
+         * Applies an event and tells whether it is worth forwarding to other nodes: a start or stop, or a
+         * keep-alive once half of the expiry has passed since the last one we forwarded.
+         */
+        private boolean apply(String userId, boolean typing, long now, long ttlNanos) {
+            if (!typing) {
+                forwardedAt.remove(userId);
+                if (typingUntil.remove(userId) != null) {
+                    changed = true;
+                    return true;
+                }
+                return false;
+            }
+
+            if (typingUntil.put(userId, now + ttlNanos) == null) {
+                changed = true;
+                forwardedAt.put(userId, now);
+                return true;
+            }
+            Long lastForward = forwardedAt.get(userId);
+            if (lastForward == null || now - lastForward > ttlNanos / 2) {
+                forwardedAt.put(userId, now);
+                return true;
+            }
+            return false;
+        }
+
+        private void expire(long now) {
+            Iterator<Map.Entry<String, Long>> iterator = typingUntil.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (now - entry.getValue() > 0) {
+                    iterator.remove();
+                    forwardedAt.remove(entry.getKey());
+                    changed = true;
+                }
+            }
+        }
+
+        private List<String> sortedUserIds() {
+            List<String> userIds = new ArrayList<>(typingUntil.keySet());
+            userIds.sort(null);
+            return userIds;
+        }
+    }
+}
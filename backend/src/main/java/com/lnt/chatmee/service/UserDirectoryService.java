@@ -0,0 +1,88 @@
+package com.lnt.chatmee.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.dto.response.UserPageResponse;
+import com.lnt.chatmee.dto.response.UserResponse;
+import com.lnt.chatmee.exception.DatabaseOperationException;
+import com.lnt.chatmee.model.User;
+import com.lnt.chatmee.repository.UserRepository;
+import com.lnt.chatmee.util.KeysetCursor;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The user directory, read page by page or exported as a stream, so neither ever holds all users in memory.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserDirectoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDirectoryService.class);
+
+    private static final int MAX_PAGE_SIZE = 500;
+    // users written to the export between flushes of the response
+    private static final int EXPORT_FLUSH_EVERY = 500;
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Returns one page of users ordered by id, using keyset pagination.
+     */
+    public UserPageResponse getPage(String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        try {
+            // one extra row tells us whether another page exists without a count query
+            PageRequest fetch = PageRequest.of(0, pageSize + 1);
+            List<User> users = cursor != null
+                ? userRepository.findDirectoryPageAfter(KeysetCursor.decode(cursor).getId(), fetch)
+                : userRepository.findDirectoryPage(fetch);
+
+            boolean hasMore = users.size() > pageSize;
+            if (hasMore) {
+                users = users.subList(0, pageSize);
+            }
+            return UserPageResponse.builder()
+                .users(users.stream().map(UserResponse::from).collect(Collectors.toList()))
+                .nextCursor(hasMore ? KeysetCursor.of(users.get(users.size() - 1)).encode() : null)
+                .hasMore(hasMore)
+                .build();
+        } catch (DataAccessException e) {
+            throw new DatabaseOperationException("Failed to fetch users", e);
+        }
+    }
+
+    /**
+     * Writes every user as one JSON object per line (NDJSON), reading them from a single database cursor
+     * and flushing as it goes, so memory stays flat however many users there are.
+     */
+    public void export(OutputStream out) throws IOException {
+        long written = 0;
+        try (Stream<User> users = userRepository.streamDirectory()) {
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(UserResponse.from(iterator.next())));
+                out.write('\n');
+                if (++written % EXPORT_FLUSH_EVERY == 0) {
+                    out.flush();
+                }
+            }
+        }
+        out.flush();
+        logger.info("Exported {} users", written);
+    }
+}
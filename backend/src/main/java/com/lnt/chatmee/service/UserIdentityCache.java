@@ -0,0 +1,212 @@
+package com.lnt.chatmee.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.lnt.chatmee.dto.UserSummary;
+import com.lnt.chatmee.exception.UserNotFoundException;
+import com.lnt.chatmee.model.User;
+import com.lnt.chatmee.repository.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * In-memory user summaries, in two layers.
+ *
+ * Users with an open WebSocket session are bound for as long as the session lives, so the STOMP send path
+ * can resolve the sender without touching MongoDB. Everyone else is kept in a bounded LRU with a TTL,
+ * shared by any code that needs to render sender names (e.g. message history), and loaded in batches.
+ */
+@Service
+public class UserIdentityCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserIdentityCache.class);
+
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Map<String, BoundIdentity> boundUsers = new ConcurrentHashMap<>();
+    private final Map<String, CachedSummary> summaries;
+
+    private final Counter sessionHits;
+    private final Counter cacheHits;
+    private final Counter databaseLookups;
+
+    public UserIdentityCache(UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${app.websocket.identity-cache.enabled:true}") boolean enabled,
+            @Value("${app.user-cache.max-entries:50000}") int maxEntries,
+            @Value("${app.user-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.summaries = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSummary> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.sessionHits = lookupCounter(meterRegistry, "session");
+        this.cacheHits = lookupCounter(meterRegistry, "cache");
+        this.databaseLookups = lookupCounter(meterRegistry, "database");
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("chatmee.identity.lookups")
+            .tag("source", source)
+            .description("User identities resolved, by where they were found")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Binds a user to a new WebSocket session, loading them from the database only if no other session has.
+     */
+    public UserSummary bindSession(String userId) {
+        BoundIdentity bound = boundUsers.compute(userId, (id, existing) -> {
+            if (existing != null) {
+                existing.sessions++;
+                return existing;
+            }
+            return new BoundIdentity(load(id));
+        });
+        return bound.summary;
+    }
+
+    /**
+     * Releases one session of the user; the identity is dropped once no session is left.
+     */
+    public void unbindSession(String userId) {
+        boundUsers.computeIfPresent(userId, (id, existing) -> --existing.sessions > 0 ? existing : null);
+    }
+
+    /**
+     * Resolves a single user. Bound users and cached summaries are served from memory; anyone else is loaded.
+     */
+    public UserSummary resolve(String userId) {
+        UserSummary summary = fromMemory(userId);
+        return summary != null ? summary : load(userId);
+    }
+
+    /**
+     * Resolves many users at once. Whatever is not in memory is fetched with a single $in query.
+     * Unknown ids are left out of the result.
+     */
+    public Map<String, UserSummary> resolveAll(Collection<String> userIds) {
+        Map<String, UserSummary> resolved = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String userId : userIds) {
+            UserSummary summary = fromMemory(userId);
+            if (summary != null) {
+                resolved.put(userId, summary);
+            } else {
+                missing.add(userId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            databaseLookups.increment(missing.size());
+            for (User user : userRepository.findSummariesByIdIn(missing)) {
+                UserSummary summary = UserSummary.from(user);
+                remember(summary);
+                resolved.put(user.getId(), summary);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Replaces the cached identity after the user's profile has changed, so open sessions pick up the new name.
+     */
+    public void refresh(User user) {
+        UserSummary summary = UserSummary.from(user);
+        boundUsers.computeIfPresent(user.getId(), (id, existing) -> {
+            existing.summary = summary;
+            return existing;
+        });
+        synchronized (summaries) {
+            summaries.remove(user.getId());
+        }
+        logger.debug("Refreshed cached identity for user {}", user.getId());
+    }
+
+    public void invalidate(String userId) {
+        synchronized (summaries) {
+            summaries.remove(userId);
+        }
+        boundUsers.computeIfPresent(userId, (id, existing) -> {
+            existing.summary = load(id);
+            return existing;
+        });
+    }
+
+    private UserSummary fromMemory(String userId) {
+        if (!enabled) {
+            return null;
+        }
+
+        BoundIdentity bound = boundUsers.get(userId);
+        if (bound != null) {
+            sessionHits.increment();
+            return bound.summary;
+        }
+
+        CachedSummary cached;
+        synchronized (summaries) {
+            cached = summaries.get(userId);
+        }
+        if (cached != null && System.nanoTime() - cached.loadedAt < ttlNanos) {
+            cacheHits.increment();
+            return cached.summary;
+        }
+        return null;
+    }
+
+    private UserSummary load(String userId) {
+        databaseLookups.increment();
+        UserSummary summary = userRepository.findById(userId)
+            .map(UserSummary::from)
+            .orElseThrow(() -> new UserNotFoundException("User not found: " + userId));
+        remember(summary);
+        return summary;
+    }
+
+    private void remember(UserSummary summary) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (summaries) {
+            summaries.put(summary.getId(), new CachedSummary(summary, System.nanoTime()));
+        }
+    }
+
+    private static final class BoundIdentity {
+        private volatile UserSummary summary;
+        private int sessions = 1;
+
+        private BoundIdentity(UserSummary summary) {
+            this.summary = summary;
+        }
+    }
+
+    private static final class CachedSummary {
+        private final UserSummary summary;
+        private final long loadedAt;
+
+        private CachedSummary(UserSummary summary, long loadedAt) {
+            this.summary = summary;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.lnt.chatmee.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import com.lnt.chatmee.dto.ChatRoomSummary;
+import com.lnt.chatmee.exception.IllegalArgumentException;
+import com.lnt.chatmee.model.Message;
+import com.lnt.chatmee.model.User;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Position in a list sorted by a (time, id) key, such as a room's message history by creation time or
+ * a user's rooms by last activity, or by id alone like the user directory, in which case time is null.
+ * Encoded as an opaque URL-safe string so clients never depend on its contents.
+ */
+@Getter
+@AllArgsConstructor
+public class KeysetCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private final LocalDateTime time;
+    private final String id;
+
+    public static KeysetCursor of(Message message) {
+        return new KeysetCursor(message.getCreatedAt(), message.getId());
+    }
+
+    public static KeysetCursor of(ChatRoomSummary room) {
+        return new KeysetCursor(room.getUpdatedAt(), room.getId());
+    }
+
+    public static KeysetCursor of(User user) {
+        return new KeysetCursor(null, user.getId());
+    }
+
+    public String encode() {
+        String raw = (time != null ? time.toString() : "") + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0 || separator == raw.length() - 1) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            LocalDateTime time = separator > 0 ? LocalDateTime.parse(raw.substring(0, separator)) : null;
+            return new KeysetCursor(time, raw.substring(separator + 1));
+        } catch (java.lang.IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
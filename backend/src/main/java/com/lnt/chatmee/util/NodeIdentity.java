@@ -0,0 +1,28 @@
+package com.lnt.chatmee.util;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Identifies this application instance when several nodes share Redis channels,
+ * so a node can recognise (and skip) the events it published itself.
+ */
+@Component
+public class NodeIdentity {
+
+    private final String nodeId;
+
+    public NodeIdentity(@Value("${app.node.id:}") String configuredId) {
+        this.nodeId = configuredId == null || configuredId.isBlank() ? UUID.randomUUID().toString() : configuredId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public boolean isSelf(String nodeId) {
+        return this.nodeId.equals(nodeId);
+    }
+}
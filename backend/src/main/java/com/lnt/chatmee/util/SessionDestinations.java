@@ -0,0 +1,27 @@
+package com.lnt.chatmee.util;
+
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+
+/**
+ * Destinations addressed to a single WebSocket session.
+ *
+ * Messages are sent with convertAndSendToUser using the session id as the user name plus a session id
+ * header; the user destination resolver then targets exactly that session, which subscribed to
+ * /user/queue/errors, rather than every session of the user.
+ */
+public final class SessionDestinations {
+
+    public static final String ERRORS = "/queue/errors";
+
+    private SessionDestinations() {
+    }
+
+    public static MessageHeaders headers(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+}
@@ -0,0 +1,41 @@
+package com.lnt.chatmee.util;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Lock-free generator of ULID-style identifiers.
+ *
+ * An id is 128 bits rendered as 26 Crockford base32 characters: a 48-bit millisecond timestamp,
+ * a 16-bit counter that keeps ids from the same millisecond in order, and 64 random bits fixed per
+ * instance so ids from different nodes never collide. Ids sort lexicographically in creation order,
+ * which keeps MongoDB inserts at the right-hand edge of the _id index.
+ */
+@Component
+public class TimeOrderedIdGenerator {
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int COUNTER_BITS = 16;
+
+    // high 64 bits of the last id: timestamp << 16 | counter
+    private final AtomicLong lastHigh = new AtomicLong();
+    private final long nodeEntropy = new SecureRandom().nextLong();
+
+    public String nextId() {
+        long high = lastHigh.updateAndGet(previous -> Math.max(previous + 1, System.currentTimeMillis() << COUNTER_BITS));
+        return encode(high, nodeEntropy);
+    }
+
+    private static String encode(long high, long low) {
+        // 128 bits -> 26 chars of 5 bits each, the first char carries only the top 3 bits
+        char[] chars = new char[26];
+        for (int i = 25; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (low & 0x1F)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+        return new String(chars);
+    }
+}
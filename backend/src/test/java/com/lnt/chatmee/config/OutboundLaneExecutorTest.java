@@ -0,0 +1,179 @@
+package com.lnt.chatmee.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Chat latency of one session under a typing flood, with the lanes and with the plain FIFO order the
+ * outbound channel used before them, plus the behaviour of the lanes when the worker pool is saturated.
+ */
+class OutboundLaneExecutorTest {
+
+    private static final String SESSION = "session-1";
+    private static final long WRITE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int TYPING_ROOMS = 10;
+    private static final long TYPING_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(400);
+    private static final long CHAT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long WARM_UP_NANOS = TimeUnit.MILLISECONDS.toNanos(300);
+    private static final long FLOOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void chatP99StaysLowUnderTypingFlood() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        ExecutorService fifo = Executors.newSingleThreadExecutor();
+        try {
+            OutboundLaneExecutor lanes = new OutboundLaneExecutor(workers, new SimpleMeterRegistry(), 16, 2000);
+            // the first frames pay for class loading and thread start-up
+            flood(lanes, WARM_UP_NANOS);
+            flood(fifo, WARM_UP_NANOS);
+            Flood withLanes = flood(lanes, FLOOD_NANOS);
+            Flood withoutLanes = flood(fifo, FLOOD_NANOS);
+
+            // typing frames arrive at 2.5 times what the socket can write, so a FIFO queue only grows
+            String figures = String.format("chat p99 %.1f ms with lanes, %.1f ms FIFO; typing frames sent %d vs %d",
+                withLanes.chatP99Millis(), withoutLanes.chatP99Millis(), withLanes.typingSent, withoutLanes.typingSent);
+            assertEquals(withLanes.chatPublished, withLanes.chatLatencies.size());
+            // the bound leaves room for scheduling noise on a single core; FIFO waits for the whole typing backlog
+            assertTrue(withLanes.chatP99Millis() < 50, "chat frames only wait behind the frame being written; " + figures);
+            assertTrue(withLanes.chatP99Millis() * 10 < withoutLanes.chatP99Millis(), figures);
+            assertTrue(withLanes.lastSnapshotSent.size() == TYPING_ROOMS,
+                "the latest snapshot of every room is eventually sent; " + figures);
+        } finally {
+            workers.shutdownNow();
+            fifo.shutdownNow();
+        }
+    }
+
+    @Test
+    void refusedDrainsAreServedByWorkersNotCallers() throws Exception {
+        // one worker and a one-slot queue: nearly every session's first drain task is refused
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        try {
+            OutboundLaneExecutor lanes = new OutboundLaneExecutor(workers, new SimpleMeterRegistry(), 16, 2000);
+            int sessions = 200;
+            CountDownLatch sent = new CountDownLatch(sessions * 2);
+            Map<Thread, Boolean> writers = new ConcurrentHashMap<>();
+            for (int i = 0; i < sessions; i++) {
+                for (String destination : List.of("/topic/chat/room-1", "/topic/typing/room-1")) {
+                    lanes.execute(new Frame("session-" + i, destination, () -> {
+                        writers.put(Thread.currentThread(), Boolean.TRUE);
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                        sent.countDown();
+                    }));
+                }
+            }
+
+            assertTrue(sent.await(10, TimeUnit.SECONDS), "every frame is sent; " + sent.getCount() + " left");
+            assertFalse(writers.containsKey(Thread.currentThread()), "no frame is written on the publishing thread");
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static Flood flood(Executor executor, long durationNanos) throws InterruptedException {
+        Flood flood = new Flood();
+        long start = System.nanoTime();
+        long nextChat = start;
+        long typing = 0;
+        for (long now = start; now - start < durationNanos; now = System.nanoTime()) {
+            if (now >= nextChat) {
+                long publishedAt = now;
+                executor.execute(new Frame(SESSION, "/topic/chat/room-0", () -> {
+                    write();
+                    flood.chatLatencies.add(System.nanoTime() - publishedAt);
+                }));
+                flood.chatPublished++;
+                nextChat += CHAT_INTERVAL_NANOS;
+            }
+            String room = "room-" + (typing % TYPING_ROOMS);
+            long snapshot = typing++;
+            executor.execute(new Frame(SESSION, "/topic/typing/" + room, () -> {
+                write();
+                flood.typingSent++;
+                flood.lastSnapshotSent.merge(room, snapshot, Math::max);
+            }));
+            LockSupport.parkNanos(TYPING_INTERVAL_NANOS);
+        }
+        // wait until the frames published before this marker have been written
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Frame(SESSION, "/topic/chat/room-0", done::countDown));
+        done.await(30, TimeUnit.SECONDS);
+        return flood;
+    }
+
+    // stands in for a socket write of one frame
+    private static void write() {
+        long end = System.nanoTime() + WRITE_NANOS;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static final class Flood {
+        private final List<Long> chatLatencies = Collections.synchronizedList(new ArrayList<>());
+        private final Map<String, Long> lastSnapshotSent = new ConcurrentHashMap<>();
+        private int chatPublished;
+        // a session is written by one thread at a time in both setups
+        private volatile int typingSent;
+
+        private double chatP99Millis() {
+            List<Long> sorted = new ArrayList<>(chatLatencies);
+            Collections.sort(sorted);
+            long p99 = sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+            return p99 / 1_000_000.0;
+        }
+    }
+
+    private static final class Frame implements MessageHandlingRunnable {
+        private final Message<byte[]> message;
+        private final Runnable write;
+
+        private Frame(String sessionId, String destination, Runnable write) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setSessionId(sessionId);
+            accessor.setDestination(destination);
+            this.message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+            this.write = write;
+        }
+
+        @Override
+        public Message<?> getMessage() {
+            return message;
+        }
+
+        @Override
+        public MessageHandler getMessageHandler() {
+            return msg -> write.run();
+        }
+
+        @Override
+        public void run() {
+            write.run();
+        }
+    }
+}
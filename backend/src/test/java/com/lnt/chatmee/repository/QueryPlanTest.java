@@ -0,0 +1,219 @@
+package com.lnt.chatmee.repository;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import com.lnt.chatmee.config.MongoIndexConfig;
+import com.lnt.chatmee.model.ChatRoom.RoomType;
+import com.lnt.chatmee.model.User;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+/**
+ * Calls every repository read against a local MongoDB, captures the commands Spring Data actually sends and
+ * runs explain on each of them, failing if a winning plan scans a whole collection. Skipped when no MongoDB
+ * is reachable; point it at another server with -Dchatmee.test.mongodb.uri=...
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final String DATABASE = "chatmee_query_plan_test";
+    private static final String ROOM_ID = "room-1";
+    private static final String USER_ID = "user-1";
+    private static final LocalDateTime CURSOR_TIME = LocalDateTime.now();
+    private static final PageRequest PAGE = PageRequest.of(0, 51);
+
+    private static final Set<String> EXPLAINED_COMMANDS = Set.of("find", "aggregate", "count", "distinct");
+    // wire-level fields the driver adds that explain does not accept inside the explained command
+    private static final Set<String> SESSION_FIELDS = Set.of("lsid", "txnNumber", "apiVersion", "apiStrict", "apiDeprecationErrors");
+
+    private final List<Document> commands = new CopyOnWriteArrayList<>();
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private Repositories repositories;
+
+    @BeforeAll
+    void setUp() {
+        String uri = System.getProperty("chatmee.test.mongodb.uri", "mongodb://localhost:27017/?serverSelectionTimeoutMS=2000");
+        CommandListener capture = new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                if (EXPLAINED_COMMANDS.contains(event.getCommandName())) {
+                    commands.add(Document.parse(event.getCommand().toJson()));
+                }
+            }
+        };
+        mongoClient = MongoClients.create(MongoClientSettings.builder()
+            .applyConnectionString(new ConnectionString(uri))
+            .addCommandListener(capture)
+            .build());
+        try {
+            mongoClient.getDatabase(DATABASE).runCommand(new Document("ping", 1));
+        } catch (Exception e) {
+            mongoClient.close();
+            assumeTrue(false, "No MongoDB reachable at " + uri);
+        }
+
+        mongoTemplate = new MongoTemplate(mongoClient, DATABASE);
+        mongoTemplate.getDb().drop();
+        new MongoIndexConfig(mongoTemplate).createIndexes();
+        repositories = new Repositories(new MongoRepositoryFactory(mongoTemplate));
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (mongoTemplate != null) {
+            mongoTemplate.getDb().drop();
+            mongoClient.close();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryQueries")
+    void queryUsesAnIndex(String query, Consumer<Repositories> call) {
+        commands.clear();
+        call.accept(repositories);
+        List<Document> sent = new ArrayList<>(commands);
+        assertFalse(sent.isEmpty(), query + " sent no query to MongoDB");
+
+        for (Document command : sent) {
+            command.keySet().removeIf(key -> key.startsWith("$") || SESSION_FIELDS.contains(key));
+            Document explain = mongoTemplate.getDb().runCommand(new Document("explain", command).append("verbosity", "queryPlanner"));
+
+            assertFalse(hasCollectionScan(explain), query + " scans the whole collection: " + command.toJson()
+                + "\n" + explain.toJson());
+        }
+    }
+
+    static Stream<Arguments> repositoryQueries() {
+        return Stream.of(
+            // MessageRepository
+            query("findByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDescIdDesc",
+                r -> r.messages.findByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDescIdDesc(ROOM_ID, PAGE)),
+            query("findPageBefore", r -> r.messages.findPageBefore(ROOM_ID, CURSOR_TIME, "msg-1", PAGE)),
+            query("findPageAfter", r -> r.messages.findPageAfter(ROOM_ID, CURSOR_TIME, "msg-1", PAGE)),
+            query("findByChatRoomIdAndCreatedAtAfterOrderByCreatedAtAsc",
+                r -> r.messages.findByChatRoomIdAndCreatedAtAfterOrderByCreatedAtAsc(ROOM_ID, CURSOR_TIME)),
+            query("findBySenderIdAndChatRoomId", r -> r.messages.findBySenderIdAndChatRoomId(USER_ID, ROOM_ID)),
+            query("MessageRepository.countByChatRoomId", r -> r.messages.countByChatRoomId(ROOM_ID)),
+            query("findByChatRoomIdOrderByCreatedAtAsc", r -> r.messages.findByChatRoomIdOrderByCreatedAtAsc(ROOM_ID)),
+            query("findByChatRoomIdAndIsDeletedFalseOrderByCreatedAtAsc",
+                r -> r.messages.findByChatRoomIdAndIsDeletedFalseOrderByCreatedAtAsc(ROOM_ID)),
+            query("findTop50ByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc",
+                r -> r.messages.findTop50ByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc(ROOM_ID)),
+            query("findTopByChatRoomIdOrderBySeqDesc", r -> r.messages.findTopByChatRoomIdOrderBySeqDesc(ROOM_ID)),
+
+            // ChatRoomRepository
+            query("findByIdAndParticipantsContaining", r -> r.chatRooms.findByIdAndParticipantsContaining(ROOM_ID, USER_ID)),
+            query("findByTypeAndIsActiveTrue", r -> r.chatRooms.findByTypeAndIsActiveTrue(RoomType.PUBLIC)),
+            query("findByParticipantsContainingAndIsActiveTrue", r -> r.chatRooms.findByParticipantsContainingAndIsActiveTrue(USER_ID)),
+            query("findSummariesByParticipant", r -> r.chatRooms.findSummariesByParticipant(USER_ID, 21)),
+            query("findSummariesByParticipantBefore",
+                r -> r.chatRooms.findSummariesByParticipantBefore(USER_ID, CURSOR_TIME, ROOM_ID, 21)),
+            query("findByCreatedByAndIsActiveTrue", r -> r.chatRooms.findByCreatedByAndIsActiveTrue(USER_ID)),
+            query("findByNameContainingIgnoreCaseAndTypeAndIsActiveTrue",
+                r -> r.chatRooms.findByNameContainingIgnoreCaseAndTypeAndIsActiveTrue("general", RoomType.PUBLIC)),
+
+            // ParticipantRepository (the deleteBy... methods share these filters)
+            query("findByChatRoomId", r -> r.participants.findByChatRoomId(ROOM_ID)),
+            query("findUserIdsByChatRoomId", r -> r.participants.findUserIdsByChatRoomId(ROOM_ID)),
+            query("findByUserId", r -> r.participants.findByUserId(USER_ID)),
+            query("findRoomIdsByUserIdIn", r -> r.participants.findRoomIdsByUserIdIn(List.of(USER_ID, "user-2"))),
+            query("findByChatRoomIdAndUserId", r -> r.participants.findByChatRoomIdAndUserId(ROOM_ID, USER_ID)),
+            query("existsByChatRoomIdAndUserId", r -> r.participants.existsByChatRoomIdAndUserId(ROOM_ID, USER_ID)),
+            query("findRecentMessagesOfMember", r -> r.participants.findRecentMessagesOfMember(ROOM_ID, USER_ID)),
+            query("ParticipantRepository.countByChatRoomId", r -> r.participants.countByChatRoomId(ROOM_ID)),
+
+            // UserRepository
+            query("findByEmail", r -> r.users.findByEmail("someone@example.com")),
+            query("findByProviderAndProviderId", r -> r.users.findByProviderAndProviderId("google", "12345")),
+            query("findSummariesByIdIn", r -> r.users.findSummariesByIdIn(List.of(USER_ID, "user-2"))),
+            query("findDirectoryPage", r -> r.users.findDirectoryPage(PageRequest.of(0, 101))),
+            query("findDirectoryPageAfter", r -> r.users.findDirectoryPageAfter(USER_ID, PageRequest.of(0, 101))),
+            query("streamDirectory", r -> {
+                try (Stream<User> users = r.users.streamDirectory()) {
+                    users.count();
+                }
+            })
+        );
+    }
+
+    private static Arguments query(String query, Consumer<Repositories> call) {
+        return Arguments.of(query, call);
+    }
+
+    // Looks at every winning plan in the explain output (an aggregate nests one per $cursor stage or shard)
+    // and ignores the rejected ones.
+    private static boolean hasCollectionScan(Object node) {
+        if (node instanceof Document) {
+            Document document = (Document) node;
+            for (String key : document.keySet()) {
+                if ("rejectedPlans".equals(key)) {
+                    continue;
+                }
+                Object value = document.get(key);
+                if ("winningPlan".equals(key) ? containsStage(value, "COLLSCAN") : hasCollectionScan(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (node instanceof List) {
+            return ((List<?>) node).stream().anyMatch(QueryPlanTest::hasCollectionScan);
+        }
+        return false;
+    }
+
+    private static boolean containsStage(Object plan, String stageName) {
+        if (plan instanceof Document) {
+            Document stage = (Document) plan;
+            if (stageName.equals(stage.getString("stage"))) {
+                return true;
+            }
+            return stage.values().stream().anyMatch(value -> containsStage(value, stageName));
+        }
+        if (plan instanceof List) {
+            return ((List<?>) plan).stream().anyMatch(value -> containsStage(value, stageName));
+        }
+        return false;
+    }
+
+    static final class Repositories {
+
+        final MessageRepository messages;
+        final ChatRoomRepository chatRooms;
+        final ParticipantRepository participants;
+        final UserRepository users;
+
+        Repositories(MongoRepositoryFactory factory) {
+            messages = factory.getRepository(MessageRepository.class);
+            chatRooms = factory.getRepository(ChatRoomRepository.class);
+            participants = factory.getRepository(ParticipantRepository.class);
+            users = factory.getRepository(UserRepository.class);
+        }
+    }
+}
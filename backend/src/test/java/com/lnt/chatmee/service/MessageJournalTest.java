@@ -0,0 +1,219 @@
+package com.lnt.chatmee.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.model.Message;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+
+/**
+ * Writes journals, leaves them behind the way a crash would (optionally truncated or corrupted) and checks
+ * what the next start replays into MongoDB.
+ */
+class MessageJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int HEADER_SIZE = 9;
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulkOperations;
+    private final List<Message> inserted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulkOperations = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(eq(BulkMode.UNORDERED), eq(Message.class))).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenAnswer(invocation -> {
+            List<Message> batch = invocation.getArgument(0);
+            inserted.addAll(batch);
+            return bulkOperations;
+        });
+    }
+
+    @Test
+    void replaysOnlyUnacknowledgedMessages() {
+        MessageJournal crashed = start();
+        crashed.append(message("msg-1"));
+        crashed.append(message("msg-2"));
+        crashed.append(message("msg-3"));
+        crashed.acknowledge(List.of(message("msg-2")));
+
+        start();
+
+        assertEquals(List.of("msg-1", "msg-3"), ids(inserted));
+    }
+
+    @Test
+    void replayedSegmentsAreNotReplayedAgain() {
+        MessageJournal crashed = start();
+        crashed.append(message("msg-1"));
+
+        start();
+        start();
+
+        assertEquals(List.of("msg-1"), ids(inserted));
+    }
+
+    @Test
+    void tornTailIsDropped() throws IOException {
+        MessageJournal crashed = start();
+        crashed.append(message("msg-1"));
+        crashed.append(message("msg-2"));
+
+        // the crash hit while the second record was being written
+        Path segment = onlySegment();
+        long secondRecord = recordSize(message("msg-1"));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(secondRecord + HEADER_SIZE + 10);
+        }
+
+        start();
+
+        assertEquals(List.of("msg-1"), ids(inserted));
+    }
+
+    @Test
+    void corruptRecordEndsReplayOfItsSegment() throws IOException {
+        MessageJournal crashed = start();
+        crashed.append(message("msg-1"));
+        crashed.append(message("msg-2"));
+        crashed.append(message("msg-3"));
+
+        // flip one payload byte of the second record so its checksum no longer matches
+        Path segment = onlySegment();
+        byte[] data = Files.readAllBytes(segment);
+        int secondPayload = (int) recordSize(message("msg-1")) + HEADER_SIZE;
+        data[secondPayload + 5] ^= 0x01;
+        Files.write(segment, data);
+
+        start();
+
+        assertEquals(List.of("msg-1"), ids(inserted));
+    }
+
+    @Test
+    void acknowledgedSegmentsAreDeletedOnceSealed() {
+        MessageJournal journal = start();
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Message message = message("msg-" + i);
+            journal.append(message);
+            messages.add(message);
+        }
+        assertTrue(segments().size() > 1, "100 messages span several segments of " + SEGMENT_SIZE + " bytes");
+
+        journal.acknowledge(messages);
+
+        assertEquals(1, segments().size());
+        assertEquals(0, journal.getPendingCount());
+    }
+
+    @Test
+    void messagesAlreadyInMongoAreKept() {
+        MessageJournal crashed = start();
+        crashed.append(message("msg-1"));
+        crashed.append(message("msg-2"));
+        // msg-1 was written but its ack was lost: the insert reports a duplicate id and must not overwrite it
+        when(bulkOperations.execute()).thenThrow(bulkFailure(11000));
+
+        start();
+        start();
+
+        // replayed once, and the journal was released even though part of the insert failed
+        assertEquals(List.of("msg-1", "msg-2"), ids(inserted));
+    }
+
+    @Test
+    void otherInsertFailuresKeepTheJournal() {
+        MessageJournal crashed = start();
+        crashed.append(message("msg-1"));
+        when(bulkOperations.execute()).thenThrow(bulkFailure(121));
+
+        assertThrows(BulkOperationException.class, this::start);
+        assertEquals(1, segments().size());
+    }
+
+    private MessageJournal start() {
+        MessageJournal journal = new MessageJournal(mongoTemplate, objectMapper, true, directory.toString(),
+            SEGMENT_SIZE, MessageJournal.FsyncPolicy.NONE, 5);
+        journal.start();
+        return journal;
+    }
+
+    private static Message message(String id) {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 1, 12, 0);
+        return Message.builder()
+            .id(id)
+            .chatRoomId("room-1")
+            .senderId("user-1")
+            .content("hello from " + id)
+            .type(Message.MessageType.TEXT)
+            .createdAt(createdAt)
+            .updatedAt(createdAt)
+            .build();
+    }
+
+    private long recordSize(Message message) throws IOException {
+        return HEADER_SIZE + objectMapper.writeValueAsBytes(message).length;
+    }
+
+    private Path onlySegment() {
+        List<Path> segments = segments();
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<String> ids(List<Message> messages) {
+        return messages.stream().map(Message::getId).collect(Collectors.toList());
+    }
+
+    private static BulkOperationException bulkFailure(int code) {
+        BulkWriteError error = new BulkWriteError(code, "write failed", new BsonDocument(), 0);
+        MongoBulkWriteException cause = new MongoBulkWriteException(BulkWriteResult.unacknowledged(), List.of(error),
+            null, new ServerAddress(), Set.of());
+        return new BulkOperationException(cause.getMessage(), cause);
+    }
+}
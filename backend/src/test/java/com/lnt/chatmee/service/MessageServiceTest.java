@@ -0,0 +1,202 @@
+package com.lnt.chatmee.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.dto.MemberRoomMessages;
+import com.lnt.chatmee.dto.response.ChatMessageResponse;
+import com.lnt.chatmee.model.Message;
+import com.lnt.chatmee.model.Participant;
+import com.lnt.chatmee.model.User;
+import com.lnt.chatmee.repository.ChatRoomRepository;
+import com.lnt.chatmee.repository.MessageRepository;
+import com.lnt.chatmee.repository.ParticipantRepository;
+import com.lnt.chatmee.repository.UserRepository;
+import com.lnt.chatmee.util.NodeIdentity;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MessageServiceTest {
+
+    private static final String ROOM_ID = "room-1";
+    private static final String USER_ID = "user-0";
+
+    private ChatRoomRepository chatRoomRepository;
+    private MessageRepository messageRepository;
+    private UserRepository userRepository;
+    private ParticipantRepository participantRepository;
+    private RoomMembershipCache roomMembershipCache;
+    private UserIdentityCache userIdentityCache;
+    private MessageService messageService;
+    // background loads of the membership cache, run by the test when it wants them finished
+    private final List<Runnable> backgroundLoads = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        chatRoomRepository = mock(ChatRoomRepository.class);
+        messageRepository = mock(MessageRepository.class);
+        userRepository = mock(UserRepository.class);
+
+        // a real membership cache over a mocked repository, so its queries on a cold cache are counted too
+        participantRepository = mock(ParticipantRepository.class);
+        when(participantRepository.findUserIdsByChatRoomId(ROOM_ID))
+            .thenReturn(List.of(Participant.builder().chatRoomId(ROOM_ID).userId(USER_ID).build()));
+        when(participantRepository.existsByChatRoomIdAndUserId(ROOM_ID, USER_ID)).thenReturn(true);
+        roomMembershipCache = new RoomMembershipCache(participantRepository, mock(StringRedisTemplate.class),
+            new ObjectMapper(), new NodeIdentity("test-node"), new SimpleMeterRegistry(), 100, 600, backgroundLoads::add);
+
+        userIdentityCache = new UserIdentityCache(userRepository, new SimpleMeterRegistry(), true, 1000, 600);
+        // a single node: without the relay every room may be buffered
+        HotRoomBuffer hotRoomBuffer = new HotRoomBuffer(new SimpleMeterRegistry(), 50, 1024 * 1024, false);
+        messageService = new MessageService(chatRoomRepository, messageRepository, participantRepository,
+            roomMembershipCache, userIdentityCache, hotRoomBuffer);
+
+        // 50 messages written by 5 different senders, newest first like the repository returns them
+        LocalDateTime newest = LocalDateTime.now();
+        List<Message> messages = IntStream.range(0, 50)
+            .mapToObj(i -> Message.builder()
+                .id("msg-" + i)
+                .chatRoomId(ROOM_ID)
+                .senderId("user-" + (i % 5))
+                .content("hello " + i)
+                .createdAt(newest.minusSeconds(i))
+                .updatedAt(newest.minusSeconds(i))
+                .build())
+            .collect(Collectors.toList());
+        when(messageRepository.findTop50ByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc(ROOM_ID)).thenReturn(messages);
+        when(participantRepository.findRecentMessagesOfMember(ROOM_ID, USER_ID))
+            .thenReturn(Optional.of(new MemberRoomMessages(messages)));
+        when(messageRepository.findByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDescIdDesc(eq(ROOM_ID), any(Pageable.class)))
+            .thenReturn(messages);
+
+        List<User> senders = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            senders.add(User.builder().id("user-" + i).name("User " + i).build());
+        }
+        when(userRepository.findSummariesByIdIn(anyCollection())).thenReturn(senders);
+    }
+
+    @Test
+    void openingRoomOnColdCacheCostsTwoQueries() {
+        List<ChatMessageResponse> responses = messageService.getRecentMessages(ROOM_ID, USER_ID);
+
+        assertEquals(50, responses.size());
+        assertEquals("User 3", responses.get(3).getSenderName());
+        // the messages with the membership check folded in, and their senders
+        assertEquals(2, databaseCalls());
+        verify(userRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void openingRoomWarmsMembershipInBackground() {
+        messageService.getRecentMessages(ROOM_ID, USER_ID);
+        runBackgroundLoads();
+        clearInvocations(chatRoomRepository, messageRepository, userRepository, participantRepository);
+
+        // sending to the room right after opening it needs no membership query
+        assertTrue(roomMembershipCache.isMember(ROOM_ID, USER_ID));
+        assertEquals(0, databaseCalls());
+    }
+
+    @Test
+    void coldMembershipCheckIsOneExistenceQuery() {
+        assertTrue(roomMembershipCache.isMember(ROOM_ID, USER_ID));
+
+        assertEquals(1, databaseCalls());
+        verify(participantRepository, never()).findUserIdsByChatRoomId(anyString());
+    }
+
+    @Test
+    void openingRoomWithWarmMembershipCostsTwoQueries() {
+        warmMembership();
+
+        messageService.getRecentMessages(ROOM_ID, USER_ID);
+
+        assertEquals(2, databaseCalls());
+    }
+
+    @Test
+    void reopeningRoomServesSendersFromCache() {
+        messageService.getRecentMessages(ROOM_ID, USER_ID);
+        runBackgroundLoads();
+        clearInvocations(chatRoomRepository, messageRepository, userRepository, participantRepository);
+
+        messageService.getMessageHistory(ROOM_ID, USER_ID, null, null, 50);
+
+        // the history page only reads the messages themselves
+        assertEquals(1, databaseCalls());
+    }
+
+    @Test
+    void reopeningHotRoomIsServedFromMemory() {
+        messageService.getRecentMessages(ROOM_ID, USER_ID);
+        runBackgroundLoads();
+        clearInvocations(chatRoomRepository, messageRepository, userRepository, participantRepository);
+
+        List<ChatMessageResponse> responses = messageService.getRecentMessages(ROOM_ID, USER_ID);
+
+        assertEquals(50, responses.size());
+        assertEquals("msg-0", responses.get(0).getId());
+        assertEquals(0, databaseCalls());
+    }
+
+    @Test
+    void roomWithoutLocalSubscribersIsNotBufferedWhenRelayed() {
+        HotRoomBuffer hotRoomBuffer = new HotRoomBuffer(new SimpleMeterRegistry(), 50, 1024 * 1024, true);
+        messageService = new MessageService(chatRoomRepository, messageRepository, participantRepository,
+            roomMembershipCache, userIdentityCache, hotRoomBuffer);
+        warmMembership();
+
+        messageService.getRecentMessages(ROOM_ID, USER_ID);
+        messageService.getRecentMessages(ROOM_ID, USER_ID);
+        // other nodes' messages never reach this node's buffer, so both reads go to MongoDB
+        verify(messageRepository, times(2)).findTop50ByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc(ROOM_ID);
+
+        hotRoomBuffer.track(ROOM_ID);
+        messageService.getRecentMessages(ROOM_ID, USER_ID);
+        messageService.getRecentMessages(ROOM_ID, USER_ID);
+        verify(messageRepository, times(3)).findTop50ByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc(ROOM_ID);
+    }
+
+    private void warmMembership() {
+        roomMembershipCache.isMember(ROOM_ID, USER_ID);
+        runBackgroundLoads();
+        clearInvocations(participantRepository);
+    }
+
+    private void runBackgroundLoads() {
+        backgroundLoads.forEach(Runnable::run);
+        backgroundLoads.clear();
+    }
+
+    private int databaseCalls() {
+        return mockingDetails(chatRoomRepository).getInvocations().size()
+            + mockingDetails(messageRepository).getInvocations().size()
+            + mockingDetails(userRepository).getInvocations().size()
+            + mockingDetails(participantRepository).getInvocations().size();
+    }
+}
@@ -0,0 +1,188 @@
+package com.lnt.chatmee.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import com.lnt.chatmee.config.MongoIndexConfig;
+import com.lnt.chatmee.exception.RoomCapacityExceededException;
+import com.lnt.chatmee.exception.UserAlreadyInRoomException;
+import com.lnt.chatmee.model.ChatRoom;
+import com.lnt.chatmee.model.Participant;
+import com.lnt.chatmee.model.Participant.Role;
+import com.lnt.chatmee.repository.ChatRoomRepository;
+import com.lnt.chatmee.repository.ParticipantRepository;
+import com.lnt.chatmee.repository.UserRepository;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+/**
+ * Fires 1,000 simultaneous joins at one room and checks that the room never ends up with more members than
+ * it allows. Needs a local MongoDB like {@code QueryPlanTest} and is skipped without one; point it at another
+ * server with -Dchatmee.test.mongodb.uri=...
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ParticipantJoinConcurrencyTest {
+
+    private static final String DATABASE = "chatmee_join_test";
+    private static final String ROOM_ID = "room-1";
+    private static final String OWNER_ID = "owner";
+    private static final int JOINS = 1000;
+    private static final int MAX_PARTICIPANTS = 100;
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private ParticipantService participantService;
+
+    @BeforeAll
+    void setUp() {
+        String uri = System.getProperty("chatmee.test.mongodb.uri", "mongodb://localhost:27017/?serverSelectionTimeoutMS=2000");
+        mongoClient = MongoClients.create(uri);
+        try {
+            mongoClient.getDatabase(DATABASE).runCommand(new Document("ping", 1));
+        } catch (Exception e) {
+            mongoClient.close();
+            assumeTrue(false, "No MongoDB reachable at " + uri);
+        }
+
+        mongoTemplate = new MongoTemplate(mongoClient, DATABASE);
+        mongoTemplate.getDb().drop();
+        new MongoIndexConfig(mongoTemplate).createIndexes();
+
+        MongoRepositoryFactory repositories = new MongoRepositoryFactory(mongoTemplate);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.existsById(anyString())).thenReturn(true);
+        participantService = new ParticipantService(
+            repositories.getRepository(ParticipantRepository.class),
+            userRepository,
+            repositories.getRepository(ChatRoomRepository.class),
+            mock(RoomMembershipCache.class),
+            mongoTemplate);
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (mongoTemplate != null) {
+            mongoTemplate.getDb().drop();
+            mongoClient.close();
+        }
+    }
+
+    @BeforeEach
+    void resetRoom() {
+        mongoTemplate.dropCollection(ChatRoom.class);
+        mongoTemplate.remove(new Query(), Participant.class);
+    }
+
+    @Test
+    void concurrentJoinsNeverExceedMaxParticipants() throws Exception {
+        createRoom(MAX_PARTICIPANTS);
+
+        List<String> outcomes = joinConcurrently(i -> "user-" + i);
+
+        // the owner already holds one seat
+        assertEquals(MAX_PARTICIPANTS - 1, count(outcomes, "joined"));
+        assertEquals(JOINS - (MAX_PARTICIPANTS - 1), count(outcomes, "full"));
+        assertEquals(MAX_PARTICIPANTS, room().getParticipants().size());
+        assertEquals(MAX_PARTICIPANTS - 1, participantCount());
+    }
+
+    @Test
+    void concurrentJoinsOfOneUserAddItOnce() throws Exception {
+        createRoom(-1);
+
+        List<String> outcomes = joinConcurrently(i -> "user-1");
+
+        assertEquals(1, count(outcomes, "joined"));
+        assertEquals(JOINS - 1, count(outcomes, "already"));
+        assertEquals(Set.of(OWNER_ID, "user-1"), new HashSet<>(room().getParticipants()));
+        assertEquals(1, participantCount());
+    }
+
+    private List<String> joinConcurrently(IntFunction<String> userIds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger unexpected = new AtomicInteger();
+        try {
+            List<Future<String>> futures = new ArrayList<>(JOINS);
+            for (int i = 0; i < JOINS; i++) {
+                String userId = userIds.apply(i);
+                Callable<String> join = () -> {
+                    start.await();
+                    try {
+                        participantService.addParticipant(ROOM_ID, userId, Role.MEMBER);
+                        return "joined";
+                    } catch (RoomCapacityExceededException e) {
+                        return "full";
+                    } catch (UserAlreadyInRoomException e) {
+                        return "already";
+                    } catch (RuntimeException e) {
+                        unexpected.incrementAndGet();
+                        return "failed";
+                    }
+                };
+                futures.add(executor.submit(join));
+            }
+            start.countDown();
+
+            List<String> outcomes = new ArrayList<>(JOINS);
+            for (Future<String> future : futures) {
+                outcomes.add(future.get());
+            }
+            assertEquals(0, unexpected.get());
+            return outcomes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void createRoom(int maxParticipants) {
+        Set<String> participants = new HashSet<>();
+        participants.add(OWNER_ID);
+        mongoTemplate.insert(ChatRoom.builder()
+            .id(ROOM_ID)
+            .name("load")
+            .createdBy(OWNER_ID)
+            .participants(participants)
+            .maxParticipants(maxParticipants)
+            .isActive(true)
+            .build());
+    }
+
+    private ChatRoom room() {
+        return mongoTemplate.findById(ROOM_ID, ChatRoom.class);
+    }
+
+    private long participantCount() {
+        return mongoTemplate.count(Query.query(Criteria.where("chatRoomId").is(ROOM_ID)), Participant.class);
+    }
+
+    private static long count(List<String> outcomes, String outcome) {
+        return outcomes.stream().filter(outcome::equals).count();
+    }
+}
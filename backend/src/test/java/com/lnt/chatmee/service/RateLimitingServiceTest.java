@@ -0,0 +1,166 @@
+package com.lnt.chatmee.service;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Counts Redis round trips per request of the leased rate limiter at different request rates for both
+ * tiers, against an in-memory stand-in for the token bucket script that uses the same simulated clock.
+ */
+class RateLimitingServiceTest {
+
+    private static final String CLIENT = "user-1";
+    private static final int PUBLIC_PER_SECOND = 5;
+    private static final int PUBLIC_PER_MINUTE = 20;
+    private static final int AUTHENTICATED_PER_SECOND = 20;
+    private static final int AUTHENTICATED_PER_MINUTE = 100;
+    private static final long SIMULATED_MINUTES = 5;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final FakeRedisRateLimiter redis = new FakeRedisRateLimiter(clock);
+
+    @ParameterizedTest(name = "{0} at {1} requests per minute")
+    @MethodSource("loads")
+    void redisCallsPerRequest(RateLimitTier tier, int requestsPerMinute, double maxCallsPerRequest) {
+        RateLimitingService limiter = node();
+
+        long requests = requestsPerMinute * SIMULATED_MINUTES;
+        long allowed = run(tier, requestsPerMinute, limiter);
+
+        double callsPerRequest = (double) redis.calls / requests;
+        String figures = String.format("%s at %d req/min: %d requests, %d allowed, %d Redis calls, %.3f calls/request",
+            tier, requestsPerMinute, requests, allowed, redis.calls, callsPerRequest);
+
+        if (requestsPerMinute <= perMinute(tier)) {
+            assertTrue(allowed == requests, "a client under its limit is never refused; " + figures);
+        }
+        assertTrue(callsPerRequest <= maxCallsPerRequest, "expected at most " + maxCallsPerRequest + "; " + figures);
+    }
+
+    // At low rates a lease expires before it is used up; from about one request per two seconds on, a lease
+    // (five tokens for PUBLIC, ten for AUTHENTICATED) is spent before it expires. Over the limit there is one
+    // round trip per refusal window, i.e. per token refilled into the per-minute bucket.
+    static Stream<Arguments> loads() {
+        return Stream.of(
+            Arguments.of(RateLimitTier.PUBLIC, 10, 0.60),
+            Arguments.of(RateLimitTier.PUBLIC, 20, 0.35),
+            Arguments.of(RateLimitTier.PUBLIC, 60, 0.40),
+            Arguments.of(RateLimitTier.PUBLIC, 600, 0.05),
+            Arguments.of(RateLimitTier.AUTHENTICATED, 10, 0.60),
+            Arguments.of(RateLimitTier.AUTHENTICATED, 30, 0.25),
+            Arguments.of(RateLimitTier.AUTHENTICATED, 60, 0.15),
+            Arguments.of(RateLimitTier.AUTHENTICATED, 90, 0.15),
+            Arguments.of(RateLimitTier.AUTHENTICATED, 600, 0.20));
+    }
+
+    @Test
+    void limitHoldsAcrossNodes() {
+        RateLimitingService first = node();
+        RateLimitingService second = node();
+
+        // 10 requests per second spread over two nodes, far above the per-minute limit
+        long allowed = 0;
+        long stepNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        for (long i = 0; i < SIMULATED_MINUTES * 600; i++) {
+            clock.set(i * stepNanos);
+            RateLimitingService node = i % 2 == 0 ? first : second;
+            if (node.check(CLIENT, RateLimitTier.AUTHENTICATED).isAllowed()) {
+                allowed++;
+            }
+        }
+
+        // a full bucket to start with, then the refill rate
+        long ceiling = AUTHENTICATED_PER_MINUTE + AUTHENTICATED_PER_MINUTE * SIMULATED_MINUTES;
+        assertTrue(allowed <= ceiling, "allowed " + allowed + " of at most " + ceiling);
+        assertTrue(allowed >= ceiling * 8 / 10, "allowed only " + allowed + " of " + ceiling);
+    }
+
+    private RateLimitingService node() {
+        return new RateLimitingService(redis, new SimpleMeterRegistry(), 10, 10_000, 1000, clock::get);
+    }
+
+    private static int perMinute(RateLimitTier tier) {
+        return tier == RateLimitTier.PUBLIC ? PUBLIC_PER_MINUTE : AUTHENTICATED_PER_MINUTE;
+    }
+
+    private long run(RateLimitTier tier, int requestsPerMinute, RateLimitingService limiter) {
+        long allowed = 0;
+        long stepNanos = TimeUnit.MINUTES.toNanos(1) / requestsPerMinute;
+        for (long i = 0; i < requestsPerMinute * SIMULATED_MINUTES; i++) {
+            clock.set(i * stepNanos);
+            if (limiter.check(CLIENT, tier).isAllowed()) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Same token bucket arithmetic as the Lua script, kept in memory.
+     */
+    private static final class FakeRedisRateLimiter extends RedisRateLimiter {
+
+        private static final Map<RateLimitTier, long[]> CAPACITIES = new EnumMap<>(Map.of(
+            RateLimitTier.PUBLIC, new long[] { PUBLIC_PER_SECOND, PUBLIC_PER_MINUTE },
+            RateLimitTier.AUTHENTICATED, new long[] { AUTHENTICATED_PER_SECOND, AUTHENTICATED_PER_MINUTE }));
+        private static final long[] PERIODS = { 1_000, 60_000 };
+
+        private final AtomicLong clock;
+        private final Map<String, double[]> tokens = new HashMap<>();
+        private final Map<String, Long> updatedAt = new HashMap<>();
+        private long calls;
+
+        private FakeRedisRateLimiter(AtomicLong clock) {
+            super(null, PUBLIC_PER_SECOND, PUBLIC_PER_MINUTE, AUTHENTICATED_PER_SECOND, AUTHENTICATED_PER_MINUTE);
+            this.clock = clock;
+        }
+
+        @Override
+        public synchronized RateLimitLease lease(String key, RateLimitTier tier, int requested, long refunded) {
+            calls++;
+            long[] capacities = CAPACITIES.get(tier);
+            long now = TimeUnit.NANOSECONDS.toMillis(clock.get());
+            double[] buckets = tokens.computeIfAbsent(tier + ":" + key, k -> new double[] { capacities[0], capacities[1] });
+            long elapsed = now - updatedAt.getOrDefault(tier + ":" + key, now);
+            updatedAt.put(tier + ":" + key, now);
+
+            long granted = requested;
+            long retry = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                double rate = (double) capacities[i] / PERIODS[i];
+                buckets[i] = Math.min(capacities[i], buckets[i] + elapsed * rate + refunded);
+                granted = Math.min(granted, (long) Math.floor(buckets[i]));
+            }
+            granted = Math.max(granted, 0);
+
+            long limit = 0;
+            long remaining = -1;
+            long reset = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] -= granted;
+                if (buckets[i] < 1) {
+                    retry = Math.max(retry, (long) Math.ceil((1 - buckets[i]) * PERIODS[i] / capacities[i]));
+                }
+                if (remaining < 0 || Math.floor(buckets[i]) < remaining) {
+                    limit = capacities[i];
+                    remaining = (long) Math.floor(buckets[i]);
+                    reset = (long) Math.ceil((capacities[i] - buckets[i]) * PERIODS[i] / capacities[i]);
+                }
+            }
+            return new RateLimitLease(granted, limit, remaining, reset, retry);
+        }
+    }
+}
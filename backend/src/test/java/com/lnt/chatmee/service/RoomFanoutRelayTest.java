@@ -0,0 +1,195 @@
+package com.lnt.chatmee.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lnt.chatmee.util.NodeIdentity;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * End-to-end delivery latency of the room relay: one node publishes a room broadcast and the time until the
+ * other node hands it to its local broker is measured, through a real Redis. Skipped when no Redis is
+ * reachable; point it at another server with -Dchatmee.test.redis.host=... and -Dchatmee.test.redis.port=...
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RoomFanoutRelayTest {
+
+    private static final String DESTINATION = RoomBroadcaster.ROOM_TOPIC_PREFIX + "room-1";
+    private static final int WARM_UP_MESSAGES = 500;
+    private static final int MESSAGES = 5_000;
+    // a busy room rather than a saturating burst, so the figures are latency and not queueing
+    private static final long PUBLISH_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final List<RedisMessageListenerContainer> containers = new ArrayList<>();
+    private final BlockingQueue<Delivery> deliveries = new LinkedBlockingQueue<>();
+
+    private LettuceConnectionFactory connectionFactory;
+    private RoomFanoutRelay sender;
+
+    @BeforeAll
+    void setUp() throws Exception {
+        String host = System.getProperty("chatmee.test.redis.host", "localhost");
+        int port = Integer.getInteger("chatmee.test.redis.port", 6379);
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port),
+            LettuceClientConfiguration.builder().commandTimeout(Duration.ofSeconds(2)).build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.ping();
+        } catch (Exception e) {
+            connectionFactory.destroy();
+            connectionFactory = null;
+            assumeTrue(false, "No Redis reachable at " + host + ":" + port);
+        }
+
+        sender = node("node-a", (message, timeout) -> true);
+        RoomFanoutRelay receiver = node("node-b", (message, timeout) -> {
+            deliveries.add(new Delivery(System.nanoTime(), (byte[]) message.getPayload()));
+            return true;
+        });
+        receiver.handleSubscribe(subscribe("session-1", "sub-0", DESTINATION));
+        awaitChannel();
+    }
+
+    @AfterAll
+    void tearDown() throws Exception {
+        for (RedisMessageListenerContainer container : containers) {
+            container.destroy();
+        }
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    void relayedBroadcastsArriveInOrderWithinMilliseconds() throws Exception {
+        // the first messages pay for class loading and JIT on both nodes
+        relay(WARM_UP_MESSAGES);
+        long[] latencies = relay(MESSAGES);
+
+        Arrays.sort(latencies);
+        String figures = String.format("relay latency p50 %.2f ms, p99 %.2f ms, max %.2f ms over %d messages",
+            millis(percentile(latencies, 0.50)), millis(percentile(latencies, 0.99)),
+            millis(latencies[latencies.length - 1]), latencies.length);
+        // one publish and one pub/sub push on a local Redis; the bound leaves room for GC and scheduling noise
+        assertTrue(millis(percentile(latencies, 0.99)) < 20, figures);
+    }
+
+    // publishes the messages from one node and returns how long each took to reach the other, in publish order
+    private long[] relay(int messages) throws InterruptedException {
+        deliveries.clear();
+        long[] publishedAt = new long[messages];
+        for (int i = 0; i < messages; i++) {
+            publishedAt[i] = System.nanoTime();
+            sender.publish(DESTINATION, payload(i));
+            LockSupport.parkNanos(PUBLISH_INTERVAL_NANOS);
+        }
+
+        long[] latencies = new long[messages];
+        for (int i = 0; i < messages; i++) {
+            Delivery delivery = deliveries.poll(10, TimeUnit.SECONDS);
+            assertTrue(delivery != null, "only " + i + " of " + messages + " messages were relayed");
+            // the relay listener runs on one thread, so a room's messages arrive in publish order
+            assertEquals(new String(payload(i), StandardCharsets.UTF_8), new String(delivery.payload, StandardCharsets.UTF_8));
+            latencies[i] = delivery.deliveredAt - publishedAt[i];
+        }
+        return latencies;
+    }
+
+    // the channel subscription is made asynchronously by the container; wait until a probe gets through
+    private void awaitChannel() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            sender.publish(DESTINATION, payload(-1));
+            if (deliveries.poll(100, TimeUnit.MILLISECONDS) != null) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+                deliveries.clear();
+                return;
+            }
+        }
+        throw new IllegalStateException("The relay channel was not subscribed within 10 seconds");
+    }
+
+    // a relay wired like one application node, with its own listener container as in RedisConfig
+    private RoomFanoutRelay node(String nodeId, MessageChannel localBroker) throws Exception {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix(nodeId + "-relay-");
+        executor.initialize();
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(executor);
+        container.afterPropertiesSet();
+        container.start();
+        containers.add(container);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new RoomFanoutRelay(container, new StringRedisTemplate(connectionFactory),
+            new SimpMessagingTemplate(localBroker), new HotRoomBuffer(meterRegistry, 50, 1024 * 1024, true),
+            new ObjectMapper(), new NodeIdentity(nodeId), meterRegistry, true);
+    }
+
+    private static SessionSubscribeEvent subscribe(String sessionId, String subscriptionId, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return new SessionSubscribeEvent(RoomFanoutRelayTest.class,
+            MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private static byte[] payload(int i) {
+        return ("{\"id\":\"msg-" + i + "\",\"content\":\"hello\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.ceil(sorted.length * percentile) - 1];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class Delivery {
+        private final long deliveredAt;
+        private final byte[] payload;
+
+        private Delivery(long deliveredAt, byte[] payload) {
+            this.deliveredAt = deliveredAt;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.lnt.chatmee.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import com.lnt.chatmee.model.User;
+import com.lnt.chatmee.repository.UserRepository;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Messages per second the STOMP send path can resolve senders for, with the session-bound identity cache and
+ * with one MongoDB read per message as before it. Needs a local MongoDB like {@code QueryPlanTest} and is
+ * skipped without one; point it at another server with -Dchatmee.test.mongodb.uri=...
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserIdentityCacheTest {
+
+    private static final String DATABASE = "chatmee_identity_cache_test";
+    private static final int USERS = 200;
+    // the default core size of the client inbound channel, which runs the send path
+    private static final int SENDER_THREADS = 4;
+    private static final int WARM_UP_MESSAGES = 2_000;
+    private static final int MESSAGES = 20_000;
+
+    private final AtomicLong userReads = new AtomicLong();
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private UserRepository userRepository;
+
+    @BeforeAll
+    void setUp() {
+        String uri = System.getProperty("chatmee.test.mongodb.uri", "mongodb://localhost:27017/?serverSelectionTimeoutMS=2000");
+        CommandListener countFinds = new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                if ("find".equals(event.getCommandName())) {
+                    userReads.incrementAndGet();
+                }
+            }
+        };
+        mongoClient = MongoClients.create(MongoClientSettings.builder()
+            .applyConnectionString(new ConnectionString(uri))
+            .addCommandListener(countFinds)
+            .build());
+        try {
+            mongoClient.getDatabase(DATABASE).runCommand(new Document("ping", 1));
+        } catch (Exception e) {
+            mongoClient.close();
+            assumeTrue(false, "No MongoDB reachable at " + uri);
+        }
+
+        mongoTemplate = new MongoTemplate(mongoClient, DATABASE);
+        mongoTemplate.getDb().drop();
+        userRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(UserRepository.class);
+
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(User.builder()
+                .id(userId(i))
+                .name("User " + i)
+                .email("user-" + i + "@example.com")
+                .provider("google")
+                .providerId("provider-" + i)
+                .build());
+        }
+        mongoTemplate.insertAll(users);
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (mongoTemplate != null) {
+            mongoTemplate.getDb().drop();
+            mongoClient.close();
+        }
+    }
+
+    @Test
+    void cachedSendersMultiplyMessageThroughput() throws Exception {
+        UserIdentityCache cached = connectAll(true);
+        UserIdentityCache uncached = connectAll(false);
+
+        // the first messages pay for class loading, connection pool growth and JIT
+        sendMessages(cached, WARM_UP_MESSAGES);
+        sendMessages(uncached, WARM_UP_MESSAGES);
+        double withCache = sendMessages(cached, MESSAGES);
+        double withoutCache = sendMessages(uncached, MESSAGES);
+
+        String figures = String.format("%.0f messages/s with the identity cache, %.0f without", withCache, withoutCache);
+        // without the cache every message waits for a round trip to MongoDB, even on localhost
+        assertTrue(withCache > withoutCache * 10, figures);
+    }
+
+    @Test
+    void boundSessionsSendWithoutReadingUsers() throws Exception {
+        UserIdentityCache cached = connectAll(true);
+        userReads.set(0);
+
+        sendMessages(cached, MESSAGES);
+
+        assertEquals(0, userReads.get());
+    }
+
+    // one session per user, bound on CONNECT the way SessionIdentityInterceptor does it
+    private UserIdentityCache connectAll(boolean enabled) {
+        UserIdentityCache cache = new UserIdentityCache(userRepository, new SimpleMeterRegistry(), enabled, 50_000, 600);
+        for (int i = 0; i < USERS; i++) {
+            cache.bindSession(userId(i));
+        }
+        return cache;
+    }
+
+    // resolves the sender of every message the way ChatWebSocketController.sendMessage does; returns messages/s
+    private static double sendMessages(UserIdentityCache cache, int messages) throws Exception {
+        ExecutorService senders = Executors.newFixedThreadPool(SENDER_THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(SENDER_THREADS);
+            long start = System.nanoTime();
+            for (int t = 0; t < SENDER_THREADS; t++) {
+                int thread = t;
+                futures.add(senders.submit(() -> {
+                    for (int i = thread; i < messages; i += SENDER_THREADS) {
+                        String senderId = userId(i % USERS);
+                        if (!senderId.equals(cache.resolve(senderId).getId())) {
+                            throw new IllegalStateException("Resolved the wrong sender for " + senderId);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            return messages * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        } finally {
+            senders.shutdownNow();
+        }
+    }
+
+    private static String userId(int i) {
+        return "user-" + i;
+    }
+}
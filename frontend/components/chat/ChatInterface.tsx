@@ -42,6 +42,7 @@ const ChatInterface: React.FC<ChatInterfaceProps> = ({
   const {
     sendTyping,
     subscribeTyping,
+    subscribePresence,
     connected: wsConnected,
   } = useWebSocket();
 
@@ -53,12 +54,13 @@ const ChatInterface: React.FC<ChatInterfaceProps> = ({
     }))
   );
 
-  // Subscribe to typing events for current room
+  // Subscribe to typing events and presence for current room
   useEffect(() => {
     if (wsConnected && roomId) {
       subscribeTyping(roomId);
+      subscribePresence(roomId);
     }
-  }, [wsConnected, roomId, subscribeTyping]);
+  }, [wsConnected, roomId, subscribeTyping, subscribePresence]);
 
   const currentRoom = rooms.find((room) => room.id === roomId);
 
@@ -62,6 +62,8 @@ export const RoomSettingsDialog: React.FC<RoomSettingsDialogProps> = ({
   const [isSaving, setIsSaving] = useState(false);
   const [participants, setParticipants] = useState<UserResponse[]>([]);
   const [allUsers, setAllUsers] = useState<UserResponse[]>([]);
+  const [usersCursor, setUsersCursor] = useState<string | null>(null);
+  const [isLoadingUsers, setIsLoadingUsers] = useState(false);
 
   // Form state
   const [formData, setFormData] = useState({
@@ -78,7 +80,7 @@ export const RoomSettingsDialog: React.FC<RoomSettingsDialogProps> = ({
   useEffect(() => {
     if (isOpen && roomId) {
       loadRoomData();
-      loadAllUsers();
+      loadUsersPage();
     }
   }, [isOpen, roomId]);
 
@@ -126,14 +128,20 @@ export const RoomSettingsDialog: React.FC<RoomSettingsDialogProps> = ({
     }
   };
 
-  const loadAllUsers = async () => {
+  // Loads the directory a page at a time; the first call starts over, later ones continue from the cursor
+  const loadUsersPage = async (cursor?: string) => {
+    setIsLoadingUsers(true);
     try {
-      const response = await userApi.getAllUsers();
+      const response = await userApi.getUsersPage(cursor);
       if (response.success && response.data) {
-        setAllUsers(response.data);
+        const page = response.data;
+        setAllUsers((prev) => (cursor ? [...prev, ...page.users] : page.users));
+        setUsersCursor(page.hasMore ? page.nextCursor : null);
       }
     } catch (error) {
       console.error("Error loading users:", error);
+    } finally {
+      setIsLoadingUsers(false);
     }
   };
 
@@ -383,6 +391,17 @@ export const RoomSettingsDialog: React.FC<RoomSettingsDialogProps> = ({
                     )}
                   </SelectContent>
                 </Select>
+                {usersCursor && (
+                  <Button
+                    variant="ghost"
+                    size="sm"
+                    className="w-full"
+                    onClick={() => loadUsersPage(usersCursor)}
+                    disabled={isLoadingUsers}
+                  >
+                    {isLoadingUsers ? "Loading users..." : "Load more users"}
+                  </Button>
+                )}
               </div>
 
               <div className="space-y-2">
@@ -18,17 +18,19 @@ const UserSearchList = ({
   excludeUserIds = [],
   placeHolder = "Search user by name or email...",
 }: UserSearchListProps) => {
-  const { users, loading, searchQuery, filteredUsers, setSearchQuery } =
+  const { users, loading, hasMore, searchQuery, filteredUsers, setSearchQuery } =
     useUsersStore(
       useShallow((state) => ({
         users: state.users,
         loading: state.loading,
+        hasMore: state.hasMore,
         searchQuery: state.searchQuery,
         filteredUsers: state.filteredUsers,
         setSearchQuery: state.setSearchQuery,
       }))
     );
   const fetchUSers = useUsersStore((state) => state.fetchUsers);
+  const fetchMoreUsers = useUsersStore((state) => state.fetchMoreUsers);
   const [addedUserIds, setAddedUserIds] = useState<Set<string>>(new Set());
 
   useEffect(() => {
@@ -70,6 +72,14 @@ const UserSearchList = ({
     setSearchQuery(e.target.value);
   };
 
+  // The directory is loaded a page at a time; scrolling near the end of the results loads the next page
+  const handleResultsScroll = (e: React.UIEvent<HTMLDivElement>) => {
+    const { scrollTop, scrollHeight, clientHeight } = e.currentTarget;
+    if (hasMore && !loading && scrollHeight - scrollTop - clientHeight < 80) {
+      fetchMoreUsers();
+    }
+  };
+
   return (
     <div className="space-y-4">
       {/* Search Input */}
@@ -85,8 +95,11 @@ const UserSearchList = ({
       </div>
 
       {/* Search Results */}
-      <div className="max-h-80 overflow-y-auto space-y-2">
-        {loading ? (
+      <div
+        className="max-h-80 overflow-y-auto space-y-2"
+        onScroll={handleResultsScroll}
+      >
+        {loading && users.length === 0 ? (
           // Loading State
           <div className="space-y-2">
             {[...Array(3)].map((_, index) => (
@@ -120,6 +133,16 @@ const UserSearchList = ({
             <p className="text-xs text-gray-400 mt-1">
               Try searching with a different name or email
             </p>
+            {hasMore && (
+              <button
+                type="button"
+                onClick={() => fetchMoreUsers()}
+                disabled={loading}
+                className="text-xs text-blue-600 hover:underline mt-2"
+              >
+                {loading ? "Loading more users..." : "Search more users"}
+              </button>
+            )}
           </div>
         ) : (
           // Results List
@@ -132,12 +155,18 @@ const UserSearchList = ({
             />
           ))
         )}
+        {loading && displayUsers.length > 0 && (
+          <p className="text-xs text-gray-400 text-center py-2">
+            Loading more users...
+          </p>
+        )}
       </div>
 
       {/* Results Count */}
       {searchQuery.trim() && !loading && displayUsers.length > 0 && (
         <div className="text-xs text-gray-500 text-center">
           Found {displayUsers.length} user{displayUsers.length !== 1 ? "s" : ""}
+          {hasMore ? " so far, scroll for more" : ""}
         </div>
       )}
     </div>
@@ -3,7 +3,7 @@ import { Client, IMessage, StompSubscription } from '@stomp/stompjs'
 import { useAuthStore, useUsersStore } from "@/lib/stores"
 import SockJS from "sockjs-client"
 
-import { PresenceMessage, TypingMessage, useChatStore } from "@/lib/stores/chatStore"
+import { PresenceDelta, RoomPresenceSnapshot, TypingSnapshot, useChatStore } from "@/lib/stores/chatStore"
 import { Message } from "@/lib/types"
 
 export interface WebSocketState {
@@ -33,7 +33,7 @@ export const useWebSocket = () => {
     const { isAuthenticated, user } = useAuthStore()
 
     // Get chat state and actions
-    const { updatePresence, updateTyping } = useChatStore();
+    const { applyPresenceDelta, mergePresence, setTypingUsers } = useChatStore();
 
     /** ==============================
     *        CONNECTION HANDLING
@@ -48,15 +48,10 @@ export const useWebSocket = () => {
             webSocketFactory: () => new SockJS(
                 process.env.NEXT_PUBLIC_WS_URL || 'http://localhost:8080/ws'
             ),
-            connectHeaders: {
-                userId: user?.id ?? ""
-            },
             debug: (str) => console.log('[STOMP]', str),
             onConnect: () => {
                 setState(prev => ({ ...prev, connected: true, connecting: false }))
                 console.log("✅ WebSocket connected for user:", user?.id);
-                console.log("Subscribing to presence after connection...")
-                subscribePresence();
 
                 if (user?.id) {
                     sendPresence(true); // announce online
@@ -146,35 +141,53 @@ export const useWebSocket = () => {
         }
     }, []);
 
-    const subscribePresence = useCallback(() => {
-        subscribe("/topic/presence", (msg) => {
-            try {
-                const data: PresenceMessage = JSON.parse(msg.body);
-                updatePresence(data);
-            } catch (err) {
-                console.error("Presence parse error:", err);
-            }
-        });
-    }, [subscribe, updatePresence]);
+    const subscribePresence = useCallback(
+        (roomId: string) => {
+            // deltas first, so nothing that changes while the snapshot is on its way is lost
+            subscribe(`/topic/presence/${roomId}`, (msg) => {
+                try {
+                    const data: PresenceDelta = JSON.parse(msg.body);
+                    applyPresenceDelta(data);
+                } catch (err) {
+                    console.error("Presence parse error:", err);
+                }
+            });
+
+            const client = clientRef.current;
+            if (!client?.connected) return;
+            const snapshotSub = client.subscribe(`/app/presence/rooms/${roomId}`, (msg) => {
+                try {
+                    const data: RoomPresenceSnapshot = JSON.parse(msg.body);
+                    mergePresence(data);
+                } catch (err) {
+                    console.error("Presence snapshot parse error:", err);
+                } finally {
+                    snapshotSub.unsubscribe();
+                }
+            });
+        },
+        [subscribe, applyPresenceDelta, mergePresence]
+    );
 
     const subscribeTyping = useCallback(
         (roomId: string) => {
             subscribe(`/topic/typing/${roomId}`, async (msg) => {
                 try {
-                    const data: TypingMessage = JSON.parse(msg.body);
-                    if (data.userId === user?.id) return;
+                    const data: TypingSnapshot = JSON.parse(msg.body);
+                    const userIds = data.userIds.filter((id) => id !== user?.id);
 
-                    const userCache = useUsersStore.getState().getUserFromCache(data.userId);
-                    if (!userCache)
-                        await useUsersStore.getState().fetchUserById(data.userId);
+                    for (const id of userIds) {
+                        if (!useUsersStore.getState().getUserFromCache(id))
+                            await useUsersStore.getState().fetchUserById(id);
+                    }
 
-                    updateTyping(data);
+                    setTypingUsers({ roomId: data.roomId, userIds });
                 } catch (err) {
                     console.error("Typing parse error:", err);
                 }
             });
         },
-        [subscribe, updateTyping, user?.id]
+        [subscribe, setTypingUsers, user?.id]
     );
 
     const subscribeRoom = useCallback(
@@ -1,16 +1,18 @@
-import { ApiResponse, UserResponse } from "../type/ResponseType";
+import { ApiResponse, UserPageResponse, UserResponse } from "../type/ResponseType";
 import { apiClient } from "./apiClient";
 
 // User API endpoints
 export const userApi = {
 
-    // Get all users
-    getAllUsers: async (): Promise<ApiResponse<UserResponse[]>> => {
+    // Get one page of users, ordered by id; pass the previous page's nextCursor to continue
+    getUsersPage: async (cursor?: string, limit = 100): Promise<ApiResponse<UserPageResponse>> => {
         try {
-            const response = await apiClient.get<ApiResponse<UserResponse[]>>("/api/v1/users")
+            const response = await apiClient.get<ApiResponse<UserPageResponse>>("/api/v1/users", {
+                params: { cursor, limit }
+            })
             return response.data
         } catch (error) {
-            console.error("Error getting all users")
+            console.error("Error getting users page")
             throw error
         }
     },
@@ -5,18 +5,40 @@ export interface PresenceMessage {
     online: boolean;
 }
 
+// Presence changes in a room over one batching window
+export interface PresenceDelta {
+    roomId: string;
+    online: string[];
+    offline: string[];
+}
+
+// Online members of a room, answered once when subscribing to the room's presence
+export interface RoomPresenceSnapshot {
+    roomId: string;
+    onlineUserIds: string[];
+}
+
 export interface TypingMessage {
     roomId: string;
     userId: string;
     typing: boolean;
 }
 
+// Everyone typing in a room, as published by the server
+export interface TypingSnapshot {
+    roomId: string;
+    userIds: string[];
+}
+
 interface ChatState {
     onlineUsers: Set<string>;
     typingUsers: Record<string, Set<string>>; // roomId -> Set<userId>
     setOnlineUsers: (users: string[]) => void;
     updatePresence: (presenceUpdate: PresenceMessage) => void;
+    mergePresence: (snapshot: RoomPresenceSnapshot) => void;
+    applyPresenceDelta: (delta: PresenceDelta) => void;
     updateTyping: (typingUpdate: TypingMessage) => void;
+    setTypingUsers: (snapshot: TypingSnapshot) => void;
 }
 
 export const useChatStore = create<ChatState>((set) => ({
@@ -37,6 +59,17 @@ export const useChatStore = create<ChatState>((set) => ({
         console.log('New online users set:', Array.from(newOnlineUsers));
         return { onlineUsers: newOnlineUsers };
     }),
+    mergePresence: ({ onlineUserIds }) => set((state) => {
+        const newOnlineUsers = new Set(state.onlineUsers);
+        onlineUserIds.forEach((id) => newOnlineUsers.add(id));
+        return { onlineUsers: newOnlineUsers };
+    }),
+    applyPresenceDelta: ({ online, offline }) => set((state) => {
+        const newOnlineUsers = new Set(state.onlineUsers);
+        online.forEach((id) => newOnlineUsers.add(id));
+        offline.forEach((id) => newOnlineUsers.delete(id));
+        return { onlineUsers: newOnlineUsers };
+    }),
     updateTyping: ({ roomId, userId, typing }) => set((state) => {
         console.log(`Updating typing for user ${userId} in room ${roomId}: ${typing}`);
         const newTypingUsers = { ...state.typingUsers };
@@ -52,4 +85,7 @@ export const useChatStore = create<ChatState>((set) => ({
         console.log('New typing users:', newTypingUsers);
         return { typingUsers: newTypingUsers };
     }),
+    setTypingUsers: ({ roomId, userIds }) => set((state) => ({
+        typingUsers: { ...state.typingUsers, [roomId]: new Set(userIds) },
+    })),
 }));
\ No newline at end of file
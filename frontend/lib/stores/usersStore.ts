@@ -9,6 +9,8 @@ interface UsersState {
     users: UserResponse[],
     usersCache: Map<string, UserResponse>
     loading: boolean
+    nextCursor: string | null
+    hasMore: boolean
     searchQuery: string;
     filteredUsers: UserResponse[];
 
@@ -16,6 +18,7 @@ interface UsersState {
     addUserToCache: (user: UserResponse) => void
     getUserFromCache: (id: string) => UserResponse | null
     fetchUsers: () => Promise<void>
+    fetchMoreUsers: () => Promise<void>
     fetchUserById: (id: string) => Promise<UserResponse | null>
     setSearchQuery: (query: string) => void;
     applyFilters: () => void;
@@ -26,6 +29,8 @@ export const useUsersStore = create<UsersState>((set, get) => ({
     users: [],
     usersCache: new Map(),
     loading: false,
+    nextCursor: null,
+    hasMore: false,
     searchQuery: "",
     filteredUsers: [],
 
@@ -54,13 +59,16 @@ export const useUsersStore = create<UsersState>((set, get) => ({
         return usersCache.get(id) || null
     },
 
+    // Loads the first page of the directory; later pages come from fetchMoreUsers as the list is scrolled
     fetchUsers: async () => {
         try {
             set({ loading: true })
-            const response = await userApi.getAllUsers()
+            const response = await userApi.getUsersPage()
 
-            if (response.success) {
-                get().setUsers(response.data)
+            if (response.success && response.data) {
+                get().setUsers(response.data.users)
+                set({ nextCursor: response.data.nextCursor, hasMore: response.data.hasMore })
+                get().applyFilters()
             } else {
                 console.error('Failed to fetch users:', response.message)
                 toast.error('Failed to fetch users')
@@ -73,6 +81,31 @@ export const useUsersStore = create<UsersState>((set, get) => ({
         }
     },
 
+    fetchMoreUsers: async () => {
+        const { nextCursor, hasMore, loading } = get()
+        if (!hasMore || !nextCursor || loading) {
+            return
+        }
+        try {
+            set({ loading: true })
+            const response = await userApi.getUsersPage(nextCursor)
+
+            if (response.success && response.data) {
+                get().setUsers([...get().users, ...response.data.users])
+                set({ nextCursor: response.data.nextCursor, hasMore: response.data.hasMore })
+                get().applyFilters()
+            } else {
+                console.error('Failed to fetch more users:', response.message)
+                toast.error('Failed to fetch users')
+            }
+        } catch (error) {
+            console.error('Failed to fetch more users:', error)
+            toast.error('Failed to fetch users')
+        } finally {
+            set({ loading: false })
+        }
+    },
+
     fetchUserById: async (id) => {
         try {
             // Check cache first
@@ -8,6 +8,12 @@ export interface UserResponse {
     provider: string
 }
 
+export interface UserPageResponse {
+    users: UserResponse[]
+    nextCursor: string | null
+    hasMore: boolean
+}
+
 export interface AuthResponse {
     authenticated: string
     user?: UserResponse